@@ -0,0 +1,32 @@
+package platypus.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs benchmarks, reporting throughput and allocation rate (through the GC
+ * profiler).
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar [benchmark regexp ...]
+ * </pre>
+ *
+ * @author rui.figueira@gmail.com (Rui Figueira)
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        OptionsBuilder builder = new OptionsBuilder();
+        if (args.length == 0) {
+            builder.include(BenchmarkRunner.class.getPackage().getName() + ".*");
+        }
+        for (String include : args) {
+            builder.include(include);
+        }
+        Options options = builder.addProfiler(GCProfiler.class).build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,91 @@
+package platypus.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import platypus.MixinClasses;
+import platypus.MixinEngine;
+import platypus.benchmarks.Fixtures.AircraftImpl;
+import platypus.benchmarks.Fixtures.Car;
+import platypus.benchmarks.Fixtures.CarImpl;
+import platypus.benchmarks.Fixtures.Delorean;
+import platypus.benchmarks.Fixtures.HandWrittenDelorean;
+
+/**
+ * Compares mixin method calls with direct calls and hand-written delegation.
+ *
+ * @author rui.figueira@gmail.com (Rui Figueira)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark {
+
+    @State(Scope.Thread)
+    public static class Plain {
+        Car car;
+        Delorean handWritten;
+
+        @Setup
+        public void setup() {
+            car = new CarImpl();
+            handWritten = new HandWrittenDelorean(new CarImpl(), new AircraftImpl());
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Mixins {
+        @Param({ "GENERATED", "PROXY" })
+        MixinEngine engine;
+
+        Delorean delorean;
+
+        @Setup
+        public void setup() {
+            delorean = MixinClasses.builder(Delorean.class).engine(engine).build().newInstance(Fixtures.DELOREAN_INITIALIZER);
+        }
+    }
+
+    @Benchmark
+    public String direct(Plain state) {
+        return state.car.drive();
+    }
+
+    @Benchmark
+    public int directPrimitive(Plain state) {
+        return state.car.speed();
+    }
+
+    @Benchmark
+    public String handWritten(Plain state) {
+        return state.handWritten.drive();
+    }
+
+    @Benchmark
+    public int handWrittenPrimitive(Plain state) {
+        return state.handWritten.speed();
+    }
+
+    @Benchmark
+    public String mixin(Mixins state) {
+        return state.delorean.drive();
+    }
+
+    @Benchmark
+    public int mixinPrimitive(Mixins state) {
+        return state.delorean.speed();
+    }
+}
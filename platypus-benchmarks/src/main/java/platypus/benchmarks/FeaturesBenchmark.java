@@ -0,0 +1,113 @@
+package platypus.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import platypus.AbstractMixinInitializer;
+import platypus.MixinClass;
+import platypus.MixinClasses;
+import platypus.MixinEngine;
+import platypus.MixinInitializer;
+import platypus.benchmarks.Fixtures.Aircraft;
+import platypus.benchmarks.Fixtures.AircraftHandler;
+import platypus.benchmarks.Fixtures.AircraftImpl;
+import platypus.benchmarks.Fixtures.Car;
+import platypus.benchmarks.Fixtures.CarImpl;
+import platypus.benchmarks.Fixtures.Delorean;
+import platypus.benchmarks.Fixtures.FastCarImpl;
+
+/**
+ * Measures overrides, invocation handler backed interfaces and nested mixins.
+ *
+ * @author rui.figueira@gmail.com (Rui Figueira)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FeaturesBenchmark {
+
+    private static final MixinInitializer OVERRIDE_INITIALIZER = new AbstractMixinInitializer() {
+        @Override
+        protected void initialize() {
+            implement(Car.class).with(new CarImpl());
+            implement(Aircraft.class).with(new AircraftImpl());
+            override(Car.class).with(new FastCarImpl());
+        }
+    };
+
+    private static final MixinInitializer HANDLER_INITIALIZER = new AbstractMixinInitializer() {
+        @Override
+        protected void initialize() {
+            implement(Car.class).with(new CarImpl());
+            implement(Aircraft.class).with(new AircraftHandler());
+        }
+    };
+
+    @Param({ "GENERATED", "PROXY" })
+    MixinEngine engine;
+
+    MixinClass<Delorean> deloreanClass;
+    Delorean overriden;
+    Delorean handlerBacked;
+    Delorean nested;
+
+    @Setup
+    public void setup() {
+        deloreanClass = MixinClasses.builder(Delorean.class).engine(engine).build();
+        overriden = deloreanClass.newInstance(OVERRIDE_INITIALIZER);
+        handlerBacked = deloreanClass.newInstance(HANDLER_INITIALIZER);
+
+        final Car innerCar = MixinClasses.builder(Car.class).engine(engine).build().newInstance(new AbstractMixinInitializer() {
+            @Override
+            protected void initialize() {
+                implement(Car.class).with(new CarImpl());
+            }
+        });
+        nested = deloreanClass.newInstance(new AbstractMixinInitializer() {
+            @Override
+            protected void initialize() {
+                implement(Car.class).with(innerCar);
+                implement(Aircraft.class).with(new AircraftImpl());
+            }
+        });
+    }
+
+    @Benchmark
+    public Delorean newInstanceWithOverride() {
+        return deloreanClass.newInstance(OVERRIDE_INITIALIZER);
+    }
+
+    @Benchmark
+    public Delorean newInstanceWithHandler() {
+        return deloreanClass.newInstance(HANDLER_INITIALIZER);
+    }
+
+    @Benchmark
+    public int overridenDispatch() {
+        return overriden.speed();
+    }
+
+    @Benchmark
+    public String handlerDispatch() {
+        return handlerBacked.fly();
+    }
+
+    @Benchmark
+    public String nestedDispatch() {
+        return nested.drive();
+    }
+}
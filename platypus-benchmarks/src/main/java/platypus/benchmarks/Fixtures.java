@@ -0,0 +1,178 @@
+package platypus.benchmarks;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+
+import platypus.AbstractMixinInitializer;
+import platypus.MixinInitializer;
+
+import com.google.common.reflect.AbstractInvocationHandler;
+
+/**
+ * Interfaces and implementations shared by all benchmarks.
+ *
+ * @author rui.figueira@gmail.com (Rui Figueira)
+ */
+public class Fixtures {
+
+    public interface Car {
+        String drive();
+        int speed();
+    }
+
+    public interface Aircraft {
+        String fly();
+        long altitude();
+    }
+
+    public interface Delorean extends Car, Aircraft { }
+
+    public static class CarImpl implements Car {
+        @Override
+        public String drive() {
+            return "It can drive";
+        }
+
+        @Override
+        public int speed() {
+            return 88;
+        }
+    }
+
+    public static class AircraftImpl implements Aircraft {
+        @Override
+        public String fly() {
+            return "It can fly";
+        }
+
+        @Override
+        public long altitude() {
+            return 1955L;
+        }
+    }
+
+    public static class FastCarImpl extends CarImpl {
+        @Override
+        public int speed() {
+            return 121;
+        }
+    }
+
+    /**
+     * What one would write without mixins.
+     */
+    public static class HandWrittenDelorean implements Delorean {
+
+        private final Car car;
+        private final Aircraft aircraft;
+
+        public HandWrittenDelorean(Car car, Aircraft aircraft) {
+            this.car = car;
+            this.aircraft = aircraft;
+        }
+
+        @Override
+        public String drive() {
+            return car.drive();
+        }
+
+        @Override
+        public int speed() {
+            return car.speed();
+        }
+
+        @Override
+        public String fly() {
+            return aircraft.fly();
+        }
+
+        @Override
+        public long altitude() {
+            return aircraft.altitude();
+        }
+    }
+
+    public static class AircraftHandler extends AbstractInvocationHandler {
+        @Override
+        protected Object handleInvocation(Object proxy, Method method, Object[] args) throws Throwable {
+            return method.getReturnType() == long.class ? 1955L : "It can fly";
+        }
+    }
+
+    public interface Capability01 { int capability01(); }
+    public interface Capability02 { int capability02(); }
+    public interface Capability03 { int capability03(); }
+    public interface Capability04 { int capability04(); }
+    public interface Capability05 { int capability05(); }
+    public interface Capability06 { int capability06(); }
+    public interface Capability07 { int capability07(); }
+    public interface Capability08 { int capability08(); }
+    public interface Capability09 { int capability09(); }
+    public interface Capability10 { int capability10(); }
+    public interface Capability11 { int capability11(); }
+    public interface Capability12 { int capability12(); }
+    public interface Capability13 { int capability13(); }
+    public interface Capability14 { int capability14(); }
+    public interface Capability15 { int capability15(); }
+    public interface Capability16 { int capability16(); }
+    public interface Capability17 { int capability17(); }
+    public interface Capability18 { int capability18(); }
+    public interface Capability19 { int capability19(); }
+    public interface Capability20 { int capability20(); }
+
+    public static final List<Class<?>> CAPABILITIES = Arrays.<Class<?>>asList(
+            Capability01.class, Capability02.class, Capability03.class, Capability04.class, Capability05.class,
+            Capability06.class, Capability07.class, Capability08.class, Capability09.class, Capability10.class,
+            Capability11.class, Capability12.class, Capability13.class, Capability14.class, Capability15.class,
+            Capability16.class, Capability17.class, Capability18.class, Capability19.class, Capability20.class);
+
+    public static class CapabilitiesImpl implements
+            Capability01, Capability02, Capability03, Capability04, Capability05,
+            Capability06, Capability07, Capability08, Capability09, Capability10,
+            Capability11, Capability12, Capability13, Capability14, Capability15,
+            Capability16, Capability17, Capability18, Capability19, Capability20 {
+        @Override public int capability01() { return 1; }
+        @Override public int capability02() { return 2; }
+        @Override public int capability03() { return 3; }
+        @Override public int capability04() { return 4; }
+        @Override public int capability05() { return 5; }
+        @Override public int capability06() { return 6; }
+        @Override public int capability07() { return 7; }
+        @Override public int capability08() { return 8; }
+        @Override public int capability09() { return 9; }
+        @Override public int capability10() { return 10; }
+        @Override public int capability11() { return 11; }
+        @Override public int capability12() { return 12; }
+        @Override public int capability13() { return 13; }
+        @Override public int capability14() { return 14; }
+        @Override public int capability15() { return 15; }
+        @Override public int capability16() { return 16; }
+        @Override public int capability17() { return 17; }
+        @Override public int capability18() { return 18; }
+        @Override public int capability19() { return 19; }
+        @Override public int capability20() { return 20; }
+    }
+
+    public static final MixinInitializer DELOREAN_INITIALIZER = new AbstractMixinInitializer() {
+        @Override
+        protected void initialize() {
+            implement(Car.class).with(new CarImpl());
+            implement(Aircraft.class).with(new AircraftImpl());
+        }
+    };
+
+    /**
+     * @return an initializer with a new implementation per capability
+     */
+    public static MixinInitializer capabilitiesInitializer(final List<Class<?>> capabilities) {
+        return new AbstractMixinInitializer() {
+            @Override
+            protected void initialize() {
+                for (Class<?> capability : capabilities) {
+                    implement(capability).with(new CapabilitiesImpl());
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,68 @@
+package platypus.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import platypus.MixinClass;
+import platypus.MixinClasses;
+import platypus.MixinEngine;
+import platypus.MixinFactory;
+import platypus.MixinInitializer;
+
+/**
+ * Measures {@link MixinClass#newInstance(MixinInitializer)} and
+ * {@link MixinFactory#newInstance()} for mixins with one, five and twenty
+ * interfaces.
+ *
+ * @author rui.figueira@gmail.com (Rui Figueira)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NewInstanceBenchmark {
+
+    @Param({ "1", "5", "20" })
+    int interfaces;
+
+    @Param({ "GENERATED", "PROXY" })
+    MixinEngine engine;
+
+    MixinClass<Object> mixinClass;
+    MixinInitializer initializer;
+    MixinFactory<Object> factory;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        List<Class<?>> capabilities = Fixtures.CAPABILITIES.subList(0, interfaces);
+        Class<Object> first = (Class<Object>) capabilities.get(0);
+        mixinClass = MixinClasses.builder(first).addInterfaces(capabilities).engine(engine).build();
+        initializer = Fixtures.capabilitiesInitializer(capabilities);
+        factory = mixinClass.compile(initializer);
+    }
+
+    @Benchmark
+    public Object newInstance() {
+        return mixinClass.newInstance(initializer);
+    }
+
+    @Benchmark
+    public Object compiledNewInstance() {
+        return factory.newInstance();
+    }
+}
@@ -0,0 +1,94 @@
+package platypus.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import platypus.AbstractMixinInitializer;
+import platypus.MixinClass;
+import platypus.MixinClasses;
+import platypus.MixinEngine;
+import platypus.benchmarks.Fixtures.Aircraft;
+import platypus.benchmarks.Fixtures.AircraftImpl;
+import platypus.benchmarks.Fixtures.Car;
+import platypus.benchmarks.Fixtures.CarImpl;
+import platypus.benchmarks.Fixtures.Delorean;
+
+/**
+ * Measures {@code equals}, {@code hashCode} and {@code toString}, which are
+ * always implemented by platypus before delegating to any explicit Object
+ * implementation.
+ *
+ * @author rui.figueira@gmail.com (Rui Figueira)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ObjectMethodsBenchmark {
+
+    @Param({ "GENERATED", "PROXY" })
+    MixinEngine engine;
+
+    @Param({ "false", "true" })
+    boolean explicitObject;
+
+    Delorean delorean;
+    Delorean other;
+    Object object;
+
+    @Setup
+    public void setup() {
+        MixinClass<Delorean> deloreanClass = MixinClasses.builder(Delorean.class).engine(engine).build();
+        object = new Object();
+        AbstractMixinInitializer initializer = new AbstractMixinInitializer() {
+            @Override
+            protected void initialize() {
+                if (explicitObject) {
+                    implement(Object.class).with(object);
+                }
+                implement(Car.class).with(new CarImpl());
+                implement(Aircraft.class).with(new AircraftImpl());
+            }
+        };
+        delorean = deloreanClass.newInstance(initializer);
+        other = deloreanClass.newInstance(initializer);
+    }
+
+    @Benchmark
+    public boolean equalsSelf() {
+        return delorean.equals(delorean);
+    }
+
+    @Benchmark
+    public boolean equalsOtherMixin() {
+        return delorean.equals(other);
+    }
+
+    @Benchmark
+    public boolean equalsObject() {
+        return delorean.equals(object);
+    }
+
+    @Benchmark
+    public int hashCodeMixin() {
+        return delorean.hashCode();
+    }
+
+    @Benchmark
+    public String toStringMixin() {
+        return delorean.toString();
+    }
+}
@@ -0,0 +1,105 @@
+package platypus.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import platypus.AbstractMixinInitializer;
+import platypus.Mixin;
+import platypus.MixinClasses;
+import platypus.MixinEngine;
+
+/**
+ * Measures calls with primitive arguments and return values, and with no
+ * arguments. Generated mixins call implementations directly, so these calls
+ * should not allocate at all (the GC profiler should report 0 B/op).
+ *
+ * @author rui.figueira@gmail.com (Rui Figueira)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrimitiveDispatchBenchmark {
+
+    public interface Sized {
+        int size();
+        int sizeOf(int index);
+    }
+
+    public interface Identified {
+        long id();
+    }
+
+    public interface Entity extends Mixin, Sized, Identified { }
+
+    public static class SizedImpl extends Mixin.Impl implements Sized {
+        @Override
+        public int size() {
+            return 1024;
+        }
+
+        @Override
+        public int sizeOf(int index) {
+            return index * 2;
+        }
+    }
+
+    public static class IdentifiedImpl implements Identified {
+        @Override
+        public long id() {
+            return 4815162342L;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Mixins {
+        @Param({ "GENERATED", "PROXY" })
+        MixinEngine engine;
+
+        Entity entity;
+        int index = 1000;
+
+        @Setup
+        public void setup() {
+            entity = MixinClasses.builder(Entity.class).engine(engine).build().newInstance(new AbstractMixinInitializer() {
+                @Override
+                protected void initialize() {
+                    implement(Mixin.class, Sized.class).with(new SizedImpl());
+                    implement(Identified.class).with(new IdentifiedImpl());
+                }
+            });
+        }
+    }
+
+    @Benchmark
+    public int intNoArgs(Mixins state) {
+        return state.entity.size();
+    }
+
+    @Benchmark
+    public int intArg(Mixins state) {
+        return state.entity.sizeOf(state.index);
+    }
+
+    @Benchmark
+    public long longNoArgs(Mixins state) {
+        return state.entity.id();
+    }
+
+    @Benchmark
+    public boolean is(Mixins state) {
+        return state.entity.is(Identified.class);
+    }
+}
@@ -7,6 +7,7 @@ import java.lang.reflect.InvocationHandler;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableSet;
@@ -41,9 +42,13 @@ public abstract class AbstractMixinInitializer implements MixinInitializer {
             this.intfs = ImmutableSet.copyOf(intfs);
         }
 
+        protected MixinImplementor.Implementation<Object> implementation() {
+            return mixinImplementor.implement(intfs);
+        }
+
         public MixinInitializer with(InstanceProvider<?> provider) {
             Preconditions.checkState(mixinImplementor != null, "implement(...).with(...) can only be called inside configure()!");
-            mixinImplementor.implement(intfs).with(provider);
+            implementation().with(provider);
             return AbstractMixinInitializer.this;
         }
 
@@ -52,7 +57,25 @@ public abstract class AbstractMixinInitializer implements MixinInitializer {
         }
 
         public MixinInitializer with(InvocationHandler handler) {
-            return with(InstanceProviders.adapt(handler, intfs));
+            Preconditions.checkState(mixinImplementor != null, "implement(...).with(...) can only be called inside configure()!");
+            implementation().with(handler);
+            return AbstractMixinInitializer.this;
+        }
+
+        public MixinInitializer withClass(Class<?> implClass) {
+            Preconditions.checkState(mixinImplementor != null, "implement(...).withClass(...) can only be called inside configure()!");
+            implementation().withClass(implClass);
+            return AbstractMixinInitializer.this;
+        }
+
+        public MixinInitializer asyncWith(InstanceProvider<?> provider, Executor executor) {
+            Preconditions.checkState(mixinImplementor != null, "implement(...).asyncWith(...) can only be called inside configure()!");
+            implementation().asyncWith(provider, executor);
+            return AbstractMixinInitializer.this;
+        }
+
+        public MixinInitializer asyncWith(Object instance, Executor executor) {
+            return asyncWith(InstanceProviders.ofInstance(instance), executor);
         }
     }
 
@@ -63,23 +86,39 @@ public abstract class AbstractMixinInitializer implements MixinInitializer {
         }
 
         @Override
-        public MixinInitializer with(InstanceProvider<?> provider) {
-            Preconditions.checkState(mixinImplementor != null, "override(...).with(...) can only be called inside configure()!");
-            mixinImplementor.override(intfs).with(provider);
-            return AbstractMixinInitializer.this;
+        protected MixinImplementor.Implementation<Object> implementation() {
+            return mixinImplementor.override(intfs);
         }
     }
 
     class RemainersImplementation extends Implementation {
 
         @Override
-        public MixinInitializer with(InstanceProvider<?> provider) {
-            mixinImplementor.implementRemainers().with(provider);
-            return AbstractMixinInitializer.this;
+        protected MixinImplementor.Implementation<Object> implementation() {
+            return mixinImplementor.implementRemainers();
         }
     }
 
 
+    public class Interception {
+
+        protected final Set<Class<?>> intfs;
+
+        public Interception(Collection<Class<?>> intfs) {
+            this.intfs = ImmutableSet.copyOf(intfs);
+        }
+
+        public MixinInitializer with(InstanceProvider<? extends MixinInterceptor> provider) {
+            Preconditions.checkState(mixinImplementor != null, "intercept(...).with(...) can only be called inside configure()!");
+            mixinImplementor.intercept(intfs).with(provider);
+            return AbstractMixinInitializer.this;
+        }
+
+        public MixinInitializer with(MixinInterceptor interceptor) {
+            return with(InstanceProviders.ofInstance(interceptor));
+        }
+    }
+
     private MixinImplementor mixinImplementor;
 
     protected Implementation implement(Class<?> ... intfs) {
@@ -102,6 +141,14 @@ public abstract class AbstractMixinInitializer implements MixinInitializer {
         return new RemainersImplementation();
     }
 
+    protected Interception intercept(Class<?> ... intfs) {
+        return intercept(ImmutableSet.copyOf(intfs));
+    }
+
+    protected Interception intercept(Collection<Class<?>> intfs) {
+        return new Interception(intfs);
+    }
+
     protected abstract void initialize();
 
     /* (non-Javadoc)
@@ -4,11 +4,20 @@ import static com.google.common.collect.Iterables.toArray;
 import static java.lang.String.format;
 import static platypus.internal.Casts.unsafeCast;
 
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Proxy;
 import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import platypus.internal.ThreadBoundInstanceProvider;
 
 import com.google.common.base.Preconditions;
+import com.google.common.base.Ticker;
+import com.google.common.base.Throwables;
 
 public class InstanceProviders {
 
@@ -44,11 +53,15 @@ public class InstanceProviders {
         }
     }
 
+    /**
+     * Thread safe memoizing provider, using double-checked locking.
+     */
     private static class MemoizingInstanceProvider<T> implements InstanceProvider<T> {
 
         private final InstanceProvider<T> delegate;
 
-        private boolean initialized = false;
+        private volatile boolean initialized = false;
+        // "value" does not need to be volatile; visibility piggy-backs on volatile read of "initialized".
         private T value;
 
         public MemoizingInstanceProvider(InstanceProvider<T> delegate) {
@@ -58,13 +71,247 @@ public class InstanceProviders {
         @Override
         public T provide() {
             if (!initialized) {
-                value = delegate.provide();
-                initialized = true;
+                synchronized (this) {
+                    if (!initialized) {
+                        T t = delegate.provide();
+                        value = t;
+                        initialized = true;
+                        return t;
+                    }
+                }
+            }
+
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return format("InstanceProviders.memoize(%s)", delegate);
+        }
+    }
+
+    /**
+     * Lock-free memoizing provider. Concurrent first calls may all call the
+     * delegate, but only one of the provided values is ever returned.
+     */
+    private static class LockFreeMemoizingInstanceProvider<T> implements InstanceProvider<T> {
+
+        private static final Object UNSET = new Object();
+
+        private final InstanceProvider<T> delegate;
+        private final AtomicReference<Object> value = new AtomicReference<Object>(UNSET);
+
+        public LockFreeMemoizingInstanceProvider(InstanceProvider<T> delegate) {
+            this.delegate = Preconditions.checkNotNull(delegate);
+        }
+
+        @Override
+        public T provide() {
+            Object v = value.get();
+            if (v == UNSET) {
+                Object t = delegate.provide();
+                v = value.compareAndSet(UNSET, t) ? t : value.get();
             }
+            return unsafeCast(v);
+        }
+
+        @Override
+        public String toString() {
+            return format("InstanceProviders.memoizeLockFree(%s)", delegate);
+        }
+    }
 
+    /**
+     * Thread safe memoizing provider whose value expires after some time.
+     */
+    private static class ExpiringMemoizingInstanceProvider<T> implements InstanceProvider<T> {
+
+        private final InstanceProvider<T> delegate;
+        private final long durationNanos;
+        private final Ticker ticker;
+
+        private volatile T value;
+        // the special value 0 means "not yet initialized".
+        private volatile long expirationNanos;
+
+        public ExpiringMemoizingInstanceProvider(InstanceProvider<T> delegate, long duration, TimeUnit unit, Ticker ticker) {
+            Preconditions.checkArgument(duration > 0);
+            this.delegate = Preconditions.checkNotNull(delegate);
+            this.durationNanos = unit.toNanos(duration);
+            this.ticker = Preconditions.checkNotNull(ticker);
+        }
+
+        @Override
+        public T provide() {
+            long nanos = expirationNanos;
+            long now = ticker.read();
+            if (nanos == 0 || now - nanos >= 0) {
+                synchronized (this) {
+                    if (nanos == expirationNanos) {
+                        T t = delegate.provide();
+                        value = t;
+                        nanos = now + durationNanos;
+                        expirationNanos = (nanos == 0) ? 1 : nanos;
+                        return t;
+                    }
+                }
+            }
             return value;
         }
 
+        @Override
+        public String toString() {
+            return format("InstanceProviders.memoizeWithExpiration(%s, %d, NANOSECONDS)", delegate, durationNanos);
+        }
+    }
+
+    /**
+     * Thread safe memoizing provider whose value is softly referenced, so it
+     * is provided again if garbage collected.
+     */
+    private static class SoftMemoizingInstanceProvider<T> implements InstanceProvider<T> {
+
+        private final InstanceProvider<T> delegate;
+
+        private volatile SoftReference<T> value;
+
+        public SoftMemoizingInstanceProvider(InstanceProvider<T> delegate) {
+            this.delegate = Preconditions.checkNotNull(delegate);
+        }
+
+        @Override
+        public T provide() {
+            T t = get(value);
+            if (t == null) {
+                synchronized (this) {
+                    t = get(value);
+                    if (t == null) {
+                        t = delegate.provide();
+                        value = new SoftReference<T>(t);
+                    }
+                }
+            }
+            return t;
+        }
+
+        private static <T> T get(SoftReference<T> ref) {
+            return ref == null ? null : ref.get();
+        }
+
+        @Override
+        public String toString() {
+            return format("InstanceProviders.memoizeSoftly(%s)", delegate);
+        }
+    }
+
+    /**
+     * Rejects {@link Mixin.Impl} values, which know a single mixin instance
+     * and so cannot be shared by several of them.
+     */
+    private static class SharedInstanceProvider<T> implements InstanceProvider<T> {
+
+        private final InstanceProvider<T> delegate;
+
+        public SharedInstanceProvider(InstanceProvider<T> delegate) {
+            this.delegate = Preconditions.checkNotNull(delegate);
+        }
+
+        @Override
+        public T provide() {
+            T t = delegate.provide();
+            Preconditions.checkState(!(t instanceof Mixin.Impl), "%s extends Mixin.Impl, so it cannot be shared by several mixin instances", t == null ? null : t.getClass().getName());
+            return t;
+        }
+
+        @Override
+        public String toString() {
+            return delegate.toString();
+        }
+    }
+
+    /**
+     * Provider with one value per thread.
+     */
+    private static class ThreadLocalInstanceProvider<T> implements ThreadBoundInstanceProvider<T> {
+
+        private final InstanceProvider<T> delegate;
+        private final ThreadLocal<T> value = new ThreadLocal<T>() {
+            @Override
+            protected T initialValue() {
+                return delegate.provide();
+            }
+        };
+
+        public ThreadLocalInstanceProvider(InstanceProvider<T> delegate) {
+            this.delegate = Preconditions.checkNotNull(delegate);
+        }
+
+        @Override
+        public T provide() {
+            return value.get();
+        }
+
+        @Override
+        public String toString() {
+            return format("InstanceProviders.perThread(%s)", delegate);
+        }
+    }
+
+    /**
+     * Provider with one value per {@link InstanceScope}, kept by the scope itself.
+     */
+    private static class ScopedInstanceProvider<T> implements InstanceProvider<T> {
+
+        private final InstanceProvider<T> delegate;
+
+        public ScopedInstanceProvider(InstanceProvider<T> delegate) {
+            this.delegate = Preconditions.checkNotNull(delegate);
+        }
+
+        @Override
+        public T provide() {
+            InstanceScope scope = InstanceScope.current();
+            Preconditions.checkState(scope != null, "%s can only provide inside an entered InstanceScope", this);
+            return scope.get(delegate);
+        }
+
+        @Override
+        public String toString() {
+            return format("InstanceProviders.scoped(%s)", delegate);
+        }
+    }
+
+    /**
+     * Provider creating a new instance of a class with its no-args constructor.
+     */
+    private static class ConstructorInstanceProvider<T> implements InstanceProvider<T> {
+
+        private final Constructor<T> constructor;
+
+        public ConstructorInstanceProvider(Class<T> clazz) {
+            try {
+                this.constructor = clazz.getDeclaredConstructor();
+                this.constructor.setAccessible(true);
+            } catch (NoSuchMethodException e) {
+                throw new IllegalArgumentException(format("%s has no constructor without arguments", clazz), e);
+            }
+        }
+
+        @Override
+        public T provide() {
+            try {
+                return constructor.newInstance();
+            } catch (InvocationTargetException e) {
+                throw Throwables.propagate(e.getTargetException());
+            } catch (Exception e) {
+                throw Throwables.propagate(e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return format("InstanceProviders.ofClass(%s)", constructor.getDeclaringClass().getName());
+        }
     }
 
     private static final class InvocationHandlerInstanceProviderAdapter<T> implements InstanceProvider<T> {
@@ -88,6 +335,14 @@ public class InstanceProviders {
         return new IdentityInstanceProvider<T>(instance);
     }
 
+    /**
+     * Returns a provider which creates a new instance of the given class for
+     * each call, using its constructor without arguments.
+     */
+    public static <T> InstanceProvider<T> ofClass(Class<T> clazz) {
+        return new ConstructorInstanceProvider<T>(clazz);
+    }
+
     public static <T> InstanceProvider<T> adapt(InvocationHandler handler, Collection<Class<?>> intfs) {
         Class<Class<?>> classClazz = unsafeCast(Class.class);
         return new InvocationHandlerInstanceProviderAdapter<T>(handler, toArray(intfs, classClazz));
@@ -97,7 +352,80 @@ public class InstanceProviders {
         return new InvocationHandlerInstanceProviderAdapter<T>(handler, intfs);
     }
 
+    /**
+     * Returns a provider which calls the given provider only once, and then
+     * always returns the same value. It is thread safe: even if called
+     * concurrently, the given provider is called only once.
+     */
     public static <T> InstanceProvider<T> memoize(InstanceProvider<T> provider) {
         return new MemoizingInstanceProvider<T>(provider);
     }
+
+    /**
+     * Returns a provider whose value is shared by all the mixin instances it
+     * provides for, like {@link #memoize(InstanceProvider)} does. The value
+     * cannot be a {@link Mixin.Impl}, as it can only belong to one mixin
+     * instance, so providing one throws an {@link IllegalStateException}.
+     */
+    public static <T> InstanceProvider<T> singleton(InstanceProvider<T> provider) {
+        return memoize(new SharedInstanceProvider<T>(provider));
+    }
+
+    /**
+     * Returns a provider which calls the given provider once per thread, so
+     * that mixin instances created by the same thread share the same value.
+     * Values are never shared between threads, so they don't need to be
+     * thread safe. Even with parallel providers, it always runs on the thread
+     * creating the mixin instance. Values cannot be
+     * {@link Mixin.Impl}, like with {@link #singleton(InstanceProvider)}.
+     */
+    public static <T> InstanceProvider<T> perThread(InstanceProvider<T> provider) {
+        return new ThreadLocalInstanceProvider<T>(new SharedInstanceProvider<T>(provider));
+    }
+
+    /**
+     * Returns a provider which calls the given provider once per
+     * {@link InstanceScope}. It must be called while a scope is entered, and
+     * the provided value is kept until that scope is closed. Parallel
+     * providers run in the scope of the thread creating the mixin instance.
+     * Values cannot be {@link Mixin.Impl}, like with
+     * {@link #singleton(InstanceProvider)}.
+     */
+    public static <T> InstanceProvider<T> scoped(InstanceProvider<T> provider) {
+        return new ScopedInstanceProvider<T>(new SharedInstanceProvider<T>(provider));
+    }
+
+    /**
+     * Like {@link #memoize(InstanceProvider)} but without any locking.
+     * Concurrent first calls may call the given provider more than once, so it
+     * should be cheap and idempotent, but all calls return the same value.
+     */
+    public static <T> InstanceProvider<T> memoizeLockFree(InstanceProvider<T> provider) {
+        return new LockFreeMemoizingInstanceProvider<T>(provider);
+    }
+
+    /**
+     * Like {@link #memoize(InstanceProvider)} but the memoized value expires
+     * after the given duration, and the given provider is called again.
+     */
+    public static <T> InstanceProvider<T> memoizeWithExpiration(InstanceProvider<T> provider, long duration, TimeUnit unit) {
+        return memoizeWithExpiration(provider, duration, unit, Ticker.systemTicker());
+    }
+
+    /**
+     * Like {@link #memoizeWithExpiration(InstanceProvider, long, TimeUnit)}
+     * but reading the time from the given ticker, for tests.
+     */
+    static <T> InstanceProvider<T> memoizeWithExpiration(InstanceProvider<T> provider, long duration, TimeUnit unit, Ticker ticker) {
+        return new ExpiringMemoizingInstanceProvider<T>(provider, duration, unit, ticker);
+    }
+
+    /**
+     * Like {@link #memoize(InstanceProvider)} but the memoized value is only
+     * softly referenced, so the given provider is called again if it was
+     * garbage collected. Null values are never memoized.
+     */
+    public static <T> InstanceProvider<T> memoizeSoftly(InstanceProvider<T> provider) {
+        return new SoftMemoizingInstanceProvider<T>(provider);
+    }
 }
@@ -0,0 +1,157 @@
+package platypus;
+
+import static java.lang.String.format;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * A named lifetime, for instance a request or a batch, for implementations
+ * provided by {@link InstanceProviders#scoped(InstanceProvider)}.
+ *
+ * <p>
+ * A scope must be entered by the threads creating mixin instances, so that
+ * scoped providers know which scope they provide for. Each scoped provider
+ * keeps a single value per scope. When the scope is closed, its
+ * {@link AutoCloseable} implementations are closed too.
+ * </p>
+ *
+ * <pre>{@code
+ * try (InstanceScope scope = new InstanceScope("request"); InstanceScope.Entry entry = scope.enter()) {
+ *   Delorean delorean = factory.newInstance();
+ *   // ...
+ * }
+ * }</pre>
+ *
+ * @author rui.figueira@gmail.com (Rui Figueira)
+ */
+public final class InstanceScope implements Closeable {
+
+    private static final ThreadLocal<InstanceScope> CURRENT = new ThreadLocal<InstanceScope>();
+
+    /**
+     * Restores the previously entered scope of a thread when closed.
+     */
+    public final class Entry implements Closeable {
+
+        private final InstanceScope previous;
+
+        private Entry(InstanceScope previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            Preconditions.checkState(CURRENT.get() == InstanceScope.this, "%s is not the current scope", InstanceScope.this);
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    private final String name;
+    private final ConcurrentMap<InstanceProvider<?>, Object> instances = Maps.newConcurrentMap();
+    private volatile boolean closed;
+
+    public InstanceScope(String name) {
+        this.name = Preconditions.checkNotNull(name);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the scope entered by the current thread, or null if there's none
+     */
+    public static InstanceScope current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Makes this scope the current scope of the calling thread, until the
+     * returned entry is closed.
+     */
+    public Entry enter() {
+        Preconditions.checkState(!closed, "%s is closed", this);
+        Entry entry = new Entry(CURRENT.get());
+        CURRENT.set(this);
+        return entry;
+    }
+
+    /**
+     * @return the instance of the given provider in this scope, provided only
+     *         the first time it is requested, unless several threads request
+     *         it at once: then only one of their instances is kept, and the
+     *         others are closed if they are {@link AutoCloseable}
+     */
+    <T> T get(InstanceProvider<T> provider) {
+        Preconditions.checkState(!closed, "%s is closed", this);
+        Object instance = instances.get(provider);
+        if (instance == null) {
+            // provided outside the map, it may create mixin instances with other scoped providers
+            Object provided = provider.provide();
+            instance = instances.putIfAbsent(provider, provided);
+            if (instance == null) {
+                instance = provided;
+            } else {
+                closeQuietly(provided);
+            }
+        }
+        @SuppressWarnings("unchecked")
+        T t = (T) instance;
+        return t;
+    }
+
+    /**
+     * Closes all the {@link AutoCloseable} instances provided in this scope.
+     *
+     * @throws IllegalStateException if some of them fail to close, with all
+     *         their failures
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+
+        List<Exception> failures = Lists.newArrayList();
+        for (Object instance : instances.values()) {
+            if (!(instance instanceof AutoCloseable)) continue;
+            try {
+                ((AutoCloseable) instance).close();
+            } catch (Exception e) {
+                failures.add(e);
+            }
+        }
+        instances.clear();
+
+        if (!failures.isEmpty()) {
+            IllegalStateException exception = new IllegalStateException(format("%d instances of %s failed to close", failures.size(), this), failures.get(0));
+            for (Exception failure : failures.subList(1, failures.size())) {
+                exception.addSuppressed(failure);
+            }
+            throw exception;
+        }
+    }
+
+    private static void closeQuietly(Object instance) {
+        if (!(instance instanceof AutoCloseable)) return;
+        try {
+            ((AutoCloseable) instance).close();
+        } catch (Exception e) {
+            // it was never used
+        }
+    }
+
+    @Override
+    public String toString() {
+        return format("InstanceScope{name=%s}", name);
+    }
+}
@@ -1,5 +1,11 @@
 package platypus;
 
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import platypus.internal.Casts;
+
 import com.google.common.base.Preconditions;
 import com.google.common.reflect.TypeToken;
 
@@ -12,7 +18,33 @@ public interface Mixin {
 
     public static class Impl implements Mixin {
 
+        /**
+         * All the supertypes of a class, so that {@link #is(Class)} is just a
+         * lookup even if mixin classes implement lots of interfaces.
+         */
+        private static final ClassValue<Set<Class<?>>> SUPERTYPES = new ClassValue<Set<Class<?>>>() {
+            @Override
+            protected Set<Class<?>> computeValue(Class<?> clazz) {
+                // a JDK collection, so that the cached value never keeps a class loader alive
+                return Collections.unmodifiableSet(new LinkedHashSet<Class<?>>(TypeToken.of(clazz).getTypes().rawTypes()));
+            }
+        };
+
+        /**
+         * The supertypes of an object, replaced as a whole when that changes.
+         */
+        private static final class Supertypes {
+            final Object obj;
+            final Set<Class<?>> supertypes;
+
+            Supertypes(Object obj) {
+                this.obj = obj;
+                this.supertypes = SUPERTYPES.get(obj.getClass());
+            }
+        }
+
         protected Object that;
+        private Supertypes thatSupertypes;
 
         public Impl() {
             that = this;
@@ -21,7 +53,7 @@ public interface Mixin {
         @Override
         public boolean is(Class<?> clazz) {
             Preconditions.checkNotNull(clazz);
-            return clazz.isInstance(that);
+            return supertypes().contains(clazz);
         }
 
         @Override
@@ -34,22 +66,44 @@ public interface Mixin {
         @SuppressWarnings("unchecked")
         public <A> A as(Class<A> clazz) {
             Preconditions.checkNotNull(clazz);
-            Preconditions.checkState(clazz.isInstance(that), "that is not an instance of %s", clazz);
+            Preconditions.checkState(supertypes().contains(clazz), "that is not an instance of %s", clazz);
             return (A) that;
         }
 
         @Override
-        @SuppressWarnings("unchecked")
         public <A> A as(TypeToken<A> type) {
             Preconditions.checkNotNull(type);
-            Class<?> clazz = type.getRawType();
-            Preconditions.checkState(clazz.isInstance(that), "that is not an instance of %s", clazz);
-            return (A) that;
+            return Casts.unsafeCast(as(type.getRawType()));
+        }
+
+        /**
+         * @return the supertypes of that, computed only once per class
+         */
+        private Set<Class<?>> supertypes() {
+            Supertypes current = thatSupertypes;
+            // subclasses can still assign that directly
+            if (current == null || current.obj != that) {
+                current = new Supertypes(that);
+                thatSupertypes = current;
+            }
+            return current.supertypes;
         }
 
+        /**
+         * Sets the mixin instance this implementation belongs to. It can only
+         * be changed after {@link #resetProxy()} is called.
+         */
         public final void setProxy(Object proxy) {
-            Preconditions.checkState(this.that == this, "Mixin proxy instance can only be set once!");
+            Preconditions.checkState(this.that == this || this.that == proxy, "Mixin proxy instance can only be set once!");
             this.that = Preconditions.checkNotNull(proxy);
         }
+
+        /**
+         * Detaches this implementation from its mixin instance, so that it can
+         * be set to another one.
+         */
+        public final void resetProxy() {
+            this.that = this;
+        }
     }
 }
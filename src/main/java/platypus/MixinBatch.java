@@ -0,0 +1,42 @@
+package platypus;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * Calls the same method on many instances of a {@link MixinClass}.
+ *
+ * <p>
+ * The method is resolved only once, and so is its implementation slot for
+ * each set of bindings, so each call goes straight to the implementation.
+ * Results are stored in the same position as their instance.
+ * </p>
+ *
+ * <pre>{@code
+ * MixinBatch<Delorean> drive = deloreanMixinClass.batch(Car.class.getMethod("drive"));
+ * Object[] results = new Object[deloreans.size()];
+ * drive.invokeParallel(deloreans, results);
+ * }</pre>
+ *
+ * @author rui.figueira@gmail.com (Rui Figueira)
+ */
+public interface MixinBatch<T> {
+
+    public Method getMethod();
+
+    /**
+     * Calls the method on each instance, in order, in the calling thread.
+     *
+     * @param results where to store each result, at least as long as {@code instances}
+     * @param args the arguments of every call
+     */
+    public void invoke(List<? extends T> instances, Object[] results, Object ... args);
+
+    /**
+     * Calls the method on the instances using the common fork join pool.
+     *
+     * @param results where to store each result, at least as long as {@code instances}
+     * @param args the arguments of every call
+     */
+    public void invokeParallel(List<? extends T> instances, Object[] results, Object ... args);
+}
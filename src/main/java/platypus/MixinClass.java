@@ -1,12 +1,39 @@
 package platypus;
 
+import java.lang.reflect.Method;
 import java.lang.reflect.Type;
+import java.util.List;
 import java.util.Set;
 
 public interface MixinClass<T> extends Type {
 
     public Set<Class<?>> getDeclaredInterfaces();
 
+    public MixinEngine getEngine();
+
     public T newInstance(MixinInitializer provider);
 
+    /**
+     * Creates several instances, running and validating the initializer only
+     * once. The initializer should use {@link InstanceProvider}s for
+     * implementations that are not meant to be shared by all instances.
+     *
+     * @throws IncompleteImplementationException if some interface is left without implementation
+     */
+    public List<T> newInstances(int count, MixinInitializer initializer);
+
+    /**
+     * Runs and validates the initializer once, so that instances can be
+     * created without running it again.
+     *
+     * @throws IncompleteImplementationException if some interface is left without implementation
+     */
+    public MixinFactory<T> compile(MixinInitializer initializer);
+
+    /**
+     * @param method a method of some interface of this mixin class, or of {@code Object}
+     * @return a batch calling the given method on instances of this mixin class
+     */
+    public MixinBatch<T> batch(Method method);
+
 }
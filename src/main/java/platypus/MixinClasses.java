@@ -3,14 +3,23 @@ package platypus;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 import platypus.internal.MixinClassImpl;
+import platypus.internal.MixinClassRegistry;
 
+import com.google.common.base.Preconditions;
 import com.google.common.collect.Sets;
 
 /**
  * Static utility methods for {@link MixinClass} creation.
  *
+ * <p>
+ * Mixin classes are canonical: creating a mixin class for the same interfaces,
+ * in the same order, returns the same instance.
+ * </p>
+ *
  * @author rui.figueira@gmail.com (Rui Figueira)
  */
 public class MixinClasses {
@@ -19,6 +28,11 @@ public class MixinClasses {
 
         private Class<T> intf;
         private Set<Class<?>> others = Sets.newLinkedHashSet();
+        private MixinEngine engine = MixinEngine.GENERATED;
+        private boolean lazy;
+        private boolean cacheHashCode;
+        private Executor providerExecutor;
+        private MixinInvocationListener listener;
 
         public Builder(Class<T> intf) {
             this.intf = intf;
@@ -33,8 +47,78 @@ public class MixinClasses {
             return this;
         }
 
+        public Builder<T> engine(MixinEngine engine) {
+            this.engine = Preconditions.checkNotNull(engine);
+            return this;
+        }
+
+        /**
+         * Instances of the built mixin class will only call an instance provider
+         * when one of its methods is invoked for the first time.
+         */
+        public Builder<T> lazy() {
+            this.lazy = true;
+            return this;
+        }
+
+        /**
+         * Instances of the built mixin class will only compute their hash code
+         * once. Use it only if the hash code of their {@code Object}
+         * implementation never changes, for instance, for immutable mixins used
+         * as map keys.
+         */
+        public Builder<T> cacheHashCode() {
+            this.cacheHashCode = true;
+            return this;
+        }
+
+        /**
+         * Instances of the built mixin class run their eager instance providers
+         * concurrently on the common fork join pool.
+         *
+         * @see #parallelProviders(Executor)
+         */
+        public Builder<T> parallelProviders() {
+            return parallelProviders(ForkJoinPool.commonPool());
+        }
+
+        /**
+         * Instances of the built mixin class run their eager instance providers
+         * concurrently on the given executor. Implementations keep their slots,
+         * so overrides work as usual. If some providers fail, an
+         * {@link IncompleteImplementationException} is thrown with all their
+         * failures. Providers must not depend on each other.
+         *
+         * <p>
+         * The last provider, and {@link InstanceProviders#perThread(InstanceProvider)}
+         * providers, run on the thread creating the instance, which may itself
+         * be a thread of the executor. Providers run in its {@link InstanceScope}.
+         * </p>
+         */
+        public Builder<T> parallelProviders(Executor executor) {
+            this.providerExecutor = Preconditions.checkNotNull(executor);
+            return this;
+        }
+
+        /**
+         * Notifies the given listener of every call to instances of the built
+         * mixin class.
+         */
+        public Builder<T> listener(MixinInvocationListener listener) {
+            this.listener = Preconditions.checkNotNull(listener);
+            return this;
+        }
+
+        /**
+         * @return the mixin class, shared by all builders with the same
+         *         configuration unless it has a listener or a provider
+         *         executor other than the common fork join pool
+         */
         public MixinClass<T> build() {
-            return create(intf, others);
+            // generated classes with a listener are bound to it, and shared classes would keep executors alive forever
+            boolean shared = listener == null && (providerExecutor == null || providerExecutor == ForkJoinPool.commonPool());
+            if (!shared) return new MixinClassImpl<T>(engine, lazy, cacheHashCode, providerExecutor, listener, intf, others);
+            return MixinClassRegistry.get(engine, lazy, cacheHashCode, providerExecutor != null, intf, others);
         }
     }
 
@@ -47,6 +131,14 @@ public class MixinClasses {
     }
 
     public static <T> MixinClass<T> create(Class<T> intf, Collection<Class<?>> others) {
-        return new MixinClassImpl<T>(intf, others);
+        return create(MixinEngine.GENERATED, intf, others);
+    }
+
+    public static <T> MixinClass<T> create(MixinEngine engine, Class<T> intf, Class<?> ... others) {
+        return create(engine, intf, Arrays.asList(others));
+    }
+
+    public static <T> MixinClass<T> create(MixinEngine engine, Class<T> intf, Collection<Class<?>> others) {
+        return MixinClassRegistry.get(engine, false, intf, others);
     }
 }
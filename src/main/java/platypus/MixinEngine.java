@@ -0,0 +1,27 @@
+package platypus;
+
+import java.lang.reflect.Proxy;
+
+/**
+ * Strategies a {@link MixinClass} can use to create its instances.
+ *
+ * @author rui.figueira@gmail.com (Rui Figueira)
+ */
+public enum MixinEngine {
+
+    /**
+     * Generates a class for each mixin class, with one field per implemented
+     * interface and methods that directly call the corresponding implementation.
+     * <p>
+     * If some interface cannot be implemented by a generated class (for instance,
+     * if it is not public), {@link #PROXY} is used instead.
+     * </p>
+     */
+    GENERATED,
+
+    /**
+     * Uses a {@link Proxy} class, reflectively dispatching each method to its
+     * implementation.
+     */
+    PROXY
+}
@@ -0,0 +1,49 @@
+package platypus;
+
+import java.util.List;
+
+/**
+ * Creates instances of a {@link MixinClass} from a compiled {@link MixinInitializer}.
+ *
+ * <p>
+ * The initializer is run and validated only once, when the factory is created
+ * with {@link MixinClass#compile(MixinInitializer)}. Each new instance just
+ * asks the recorded {@link InstanceProvider}s for their implementations, so
+ * providers should return a new implementation per call whenever
+ * implementations are not meant to be shared by all instances (which is always
+ * the case for {@link Mixin.Impl} implementations).
+ * </p>
+ *
+ * <pre>{@code
+ * MixinFactory<Delorean> factory = deloreanMixinClass.compile(new AbstractMixinInitializer() {
+ *   &#64;Override
+ *   protected void initialize() {
+ *     implement(Car.class).with(new InstanceProvider<Car>() {
+ *       public Car provide() { return new CarImpl(); }
+ *     });
+ *     implement(Aircraft.class).with(aircraft);
+ *   }
+ * });
+ * Delorean delorean = factory.newInstance();
+ * }</pre>
+ *
+ * @author rui.figueira@gmail.com (Rui Figueira)
+ */
+public interface MixinFactory<T> {
+
+    public MixinClass<T> getMixinClass();
+
+    public T newInstance();
+
+    /**
+     * @return {@code count} new instances
+     */
+    public List<T> newInstances(int count);
+
+    /**
+     * @param maxPooledPerThread the maximum number of released instances kept by each thread
+     * @return a pool of instances created by this factory
+     * @throws IllegalStateException if the mixin class is lazy
+     */
+    public MixinPool<T> pooled(int maxPooledPerThread);
+}
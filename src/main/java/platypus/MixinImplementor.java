@@ -2,6 +2,7 @@ package platypus;
 
 import java.lang.reflect.InvocationHandler;
 import java.util.Collection;
+import java.util.concurrent.Executor;
 
 public interface MixinImplementor {
 
@@ -9,6 +10,28 @@ public interface MixinImplementor {
         public MixinImplementor with(T obj);
         public MixinImplementor with(InstanceProvider<? extends T> provider);
         public MixinImplementor with(InvocationHandler handler);
+
+        /**
+         * Each mixin instance gets a new instance of the given class, unless
+         * it is {@link Stateless}, in which case all instances of the mixin
+         * class share the same one.
+         */
+        public MixinImplementor withClass(Class<? extends T> implClass);
+
+        /**
+         * Methods returning a {@link java.util.concurrent.Future},
+         * {@link java.util.concurrent.CompletionStage} or
+         * {@link java.util.concurrent.CompletableFuture} run on the given
+         * executor, and return a {@link java.util.concurrent.CompletableFuture}
+         * right away. Other methods are called synchronously.
+         */
+        public MixinImplementor asyncWith(T obj, Executor executor);
+        public MixinImplementor asyncWith(InstanceProvider<? extends T> provider, Executor executor);
+    }
+
+    public interface Interception {
+        public MixinImplementor with(MixinInterceptor interceptor);
+        public MixinImplementor with(InstanceProvider<? extends MixinInterceptor> provider);
     }
 
     public <T> Implementation<T> implement(Class<T> clazz);
@@ -19,4 +42,7 @@ public interface MixinImplementor {
     public <T> Implementation<T> override(Class<T> clazz);
     public Implementation<Object> override(Class<?> ... clazz);
     public Implementation<Object> override(Collection<Class<?>> clazzes);
+
+    public Interception intercept(Class<?> ... clazz);
+    public Interception intercept(Collection<Class<?>> clazzes);
 }
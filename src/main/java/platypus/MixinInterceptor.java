@@ -0,0 +1,34 @@
+package platypus;
+
+/**
+ * Around advice for the methods of some interfaces of a mixin.
+ *
+ * <p>
+ * Interceptors are bound with {@code intercept(...).with(...)}. When several
+ * interceptors apply to a method, the first one to be bound is the outermost
+ * one. Interceptor chains are computed once per set of bindings, so calls just
+ * go through them.
+ * </p>
+ *
+ * <pre>{@code
+ * intercept(Car.class).with(new MixinInterceptor() {
+ *   public Object intercept(MixinInvocation invocation) throws Throwable {
+ *     long start = System.nanoTime();
+ *     try {
+ *       return invocation.proceed();
+ *     } finally {
+ *       log(invocation.getMethod(), System.nanoTime() - start);
+ *     }
+ *   }
+ * });
+ * }</pre>
+ *
+ * @author rui.figueira@gmail.com (Rui Figueira)
+ */
+public interface MixinInterceptor {
+
+    /**
+     * @return the result of the call, usually obtained with {@link MixinInvocation#proceed()}
+     */
+    public Object intercept(MixinInvocation invocation) throws Throwable;
+}
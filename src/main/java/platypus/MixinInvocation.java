@@ -0,0 +1,26 @@
+package platypus;
+
+import java.lang.reflect.Method;
+
+/**
+ * A call to a mixin method, as seen by a {@link MixinInterceptor}.
+ *
+ * @author rui.figueira@gmail.com (Rui Figueira)
+ */
+public interface MixinInvocation {
+
+    public Object getMixin();
+
+    public Method getMethod();
+
+    /**
+     * @return the call arguments, which interceptors can change before proceeding
+     */
+    public Object[] getArguments();
+
+    /**
+     * Calls the next interceptor, or the implementation if there are no more
+     * interceptors. It can be called more than once, for instance, to retry.
+     */
+    public Object proceed() throws Throwable;
+}
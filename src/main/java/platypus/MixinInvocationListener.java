@@ -0,0 +1,27 @@
+package platypus;
+
+import java.lang.reflect.Method;
+
+/**
+ * Gets notified of every method call on the instances of a {@link MixinClass}.
+ *
+ * <p>
+ * Listeners are set when building a mixin class (see
+ * {@link MixinClasses.Builder#listener(MixinInvocationListener)}). Mixin
+ * classes without listener do not pay any cost for this feature.
+ * </p>
+ *
+ * @see MixinMetrics
+ * @author rui.figueira@gmail.com (Rui Figueira)
+ */
+public interface MixinInvocationListener {
+
+    /**
+     * Called after a method of a mixin instance returns, in the calling thread.
+     *
+     * @param method the invoked method
+     * @param nanos the time the implementation took, in nanoseconds
+     * @param thrown the exception thrown by the implementation, or null if it returned normally
+     */
+    public void invoked(Method method, long nanos, Throwable thrown);
+}
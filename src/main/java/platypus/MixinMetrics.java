@@ -0,0 +1,160 @@
+package platypus;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+/**
+ * A {@link MixinInvocationListener} that keeps call counts and latency
+ * histograms per method.
+ *
+ * <p>
+ * Counters are striped, so that concurrent calls do not contend on them.
+ * Latencies are recorded in buckets with a relative precision of 12.5%, which
+ * is enough for percentiles while keeping recording constant time.
+ * </p>
+ *
+ * <pre>{@code
+ * MixinMetrics metrics = new MixinMetrics();
+ * MixinClass<Delorean> deloreanMixinClass = MixinClasses.builder(Delorean.class)
+ *     .listener(metrics)
+ *     .build();
+ * // ...
+ * MethodMetrics driveMetrics = metrics.getMethodMetrics(Car.class.getMethod("drive"));
+ * long p99 = driveMetrics.getPercentileNanos(99);
+ * }</pre>
+ *
+ * @author rui.figueira@gmail.com (Rui Figueira)
+ */
+public class MixinMetrics implements MixinInvocationListener {
+
+    /**
+     * Call counts and latencies of a method.
+     */
+    public static class MethodMetrics {
+
+        // each power of two is split into 8 linear sub-buckets
+        private static final int SUB_BUCKET_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicReferenceArray<LongAdder> buckets = new AtomicReferenceArray<LongAdder>(BUCKETS);
+
+        void record(long nanos, Throwable thrown) {
+            count.increment();
+            if (thrown != null) failures.increment();
+            totalNanos.add(nanos);
+            bucket(bucketIndex(nanos)).increment();
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        public double getMeanNanos() {
+            long count = getCount();
+            return count == 0 ? 0 : (double) getTotalNanos() / count;
+        }
+
+        /**
+         * @param percentile between 0 and 100
+         * @return an upper bound of the latency of the given percentile of
+         *         calls, or 0 if there were no calls
+         */
+        public long getPercentileNanos(double percentile) {
+            Preconditions.checkArgument(percentile >= 0 && percentile <= 100, "percentile must be between 0 and 100");
+            long[] counts = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                LongAdder bucket = buckets.get(i);
+                counts[i] = bucket == null ? 0 : bucket.sum();
+                total += counts[i];
+            }
+            long target = (long) Math.ceil(total * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (counts[i] > 0 && seen >= target) {
+                    return i + 1 < BUCKETS ? lowerBound(i + 1) - 1 : Long.MAX_VALUE;
+                }
+            }
+            return 0;
+        }
+
+        private LongAdder bucket(int index) {
+            LongAdder bucket = buckets.get(index);
+            if (bucket == null) {
+                buckets.compareAndSet(index, null, new LongAdder());
+                bucket = buckets.get(index);
+            }
+            return bucket;
+        }
+
+        static int bucketIndex(long nanos) {
+            if (nanos < SUB_BUCKETS) return (int) Math.max(nanos, 0);
+            int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+            int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+        }
+
+        static long lowerBound(int index) {
+            if (index < SUB_BUCKETS) return index;
+            int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+            long subBucket = index % SUB_BUCKETS;
+            return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d, failures=%d, mean=%.1fns, p99=%dns", getCount(), getFailures(), getMeanNanos(), getPercentileNanos(99));
+        }
+    }
+
+    private final ConcurrentMap<Method, MethodMetrics> methodMetrics = Maps.newConcurrentMap();
+
+    @Override
+    public void invoked(Method method, long nanos, Throwable thrown) {
+        getOrCreate(method).record(nanos, thrown);
+    }
+
+    /**
+     * @return the metrics of the given method, or null if it was never called
+     */
+    public MethodMetrics getMethodMetrics(Method method) {
+        return methodMetrics.get(method);
+    }
+
+    /**
+     * @return the metrics of all called methods
+     */
+    public Map<Method, MethodMetrics> getMethodMetrics() {
+        return ImmutableMap.copyOf(methodMetrics);
+    }
+
+    private MethodMetrics getOrCreate(Method method) {
+        MethodMetrics metrics = methodMetrics.get(method);
+        if (metrics == null) {
+            metrics = new MethodMetrics();
+            MethodMetrics existing = methodMetrics.putIfAbsent(method, metrics);
+            if (existing != null) metrics = existing;
+        }
+        return metrics;
+    }
+}
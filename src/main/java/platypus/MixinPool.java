@@ -0,0 +1,35 @@
+package platypus;
+
+/**
+ * A {@link MixinFactory} that recycles released mixin instances.
+ *
+ * <p>
+ * {@link #newInstance()} returns a previously released instance whenever one
+ * is available, so that the instance and its dispatch structures are not
+ * allocated again. Released instances are kept per thread, up to a maximum,
+ * and must not be used after being released.
+ * </p>
+ *
+ * <pre>{@code
+ * MixinPool<Delorean> pool = deloreanMixinClass.compile(initializer).pooled(16);
+ * Delorean delorean = pool.newInstance();
+ * try {
+ *   delorean.drive();
+ * } finally {
+ *   pool.release(delorean);
+ * }
+ * }</pre>
+ *
+ * @see Resettable
+ * @author rui.figueira@gmail.com (Rui Figueira)
+ */
+public interface MixinPool<T> extends MixinFactory<T> {
+
+    /**
+     * Returns an instance created by this pool, so that it can be reused.
+     *
+     * @throws IllegalArgumentException if the instance was not created by this pool
+     * @throws IllegalStateException if the instance was already released
+     */
+    public void release(T instance);
+}
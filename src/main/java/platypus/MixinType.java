@@ -0,0 +1,32 @@
+package platypus;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an interface whose mixin class is generated at compile time, by
+ * {@link platypus.processor.MixinTypeProcessor}, instead of at runtime.
+ *
+ * <p>
+ * {@link MixinClasses#create(Class, Class...)} uses the precompiled class for
+ * mixin classes of only this interface that are neither lazy nor have a
+ * listener, and generates one at runtime otherwise. Precompiled classes live
+ * in the same package as the interface, so the interface does not need to be
+ * public.
+ * </p>
+ *
+ * <pre>{@code
+ * @MixinType
+ * public interface Delorean extends Car, Aircraft { }
+ * }</pre>
+ *
+ * @author rui.figueira@gmail.com (Rui Figueira)
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface MixinType {
+}
@@ -0,0 +1,21 @@
+package platypus;
+
+/**
+ * An implementation that can be reused by a pooled mixin instance.
+ *
+ * <p>
+ * When a mixin instance is released to its {@link MixinPool}, its
+ * implementations that are {@link Resettable} get reset and are kept for the
+ * next time the instance is acquired. Other implementations are discarded and
+ * replaced by new ones from their {@link InstanceProvider}.
+ * </p>
+ *
+ * @author rui.figueira@gmail.com (Rui Figueira)
+ */
+public interface Resettable {
+
+    /**
+     * Restores this implementation to the state it had when it was provided.
+     */
+    public void reset();
+}
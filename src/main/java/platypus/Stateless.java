@@ -0,0 +1,33 @@
+package platypus;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an implementation class without state, so that a single instance of
+ * it can be shared by all the instances of a {@link MixinClass}.
+ *
+ * <p>
+ * It applies to implementations bound with {@code withClass(...)}: stateless
+ * classes are instantiated once per mixin class, while the others are
+ * instantiated for each mixin instance. {@link Mixin.Impl} subclasses hold
+ * their mixin instance, so they cannot be stateless.
+ * </p>
+ *
+ * <p>
+ * Only the implementation object is shared: each mixin instance still keeps
+ * a reference to it, in the same field or slot as any other implementation,
+ * since generated mixin classes are shared by all dispatch plans and cannot
+ * drop fields for some of them.
+ * </p>
+ *
+ * @author rui.figueira@gmail.com (Rui Figueira)
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Stateless {
+}
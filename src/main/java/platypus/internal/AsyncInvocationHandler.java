@@ -0,0 +1,105 @@
+package platypus.internal;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Runs the methods of an implementation that return a {@link Future},
+ * {@link CompletionStage} or {@link CompletableFuture} on an executor, and
+ * returns a {@link CompletableFuture} right away. Other methods are called
+ * synchronously.
+ *
+ * <p>
+ * It is bound like any other {@link InvocationHandler}, so both mixin engines
+ * call it directly. If the implementation returns a future, the returned
+ * future completes with its outcome, and any exception thrown by the
+ * implementation completes it exceptionally.
+ * </p>
+ *
+ * @author rui.figueira@gmail.com (Rui Figueira)
+ */
+final class AsyncInvocationHandler implements InvocationHandler {
+
+    private final MixinClassImpl<?> mixinClass;
+    private final Object target;
+    private final Executor executor;
+
+    AsyncInvocationHandler(MixinClassImpl<?> mixinClass, Object target, Executor executor) {
+        this.mixinClass = mixinClass;
+        this.target = Preconditions.checkNotNull(target);
+        this.executor = Preconditions.checkNotNull(executor);
+    }
+
+    /**
+     * @return the implementation whose methods are run on the executor
+     */
+    Object getTarget() {
+        return target;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, final Object[] args) throws Throwable {
+        final MethodInvoker invoker = mixinClass.getInvoker(method);
+        if (!isAsync(method)) return invoker.invoke(target, args);
+
+        final CompletableFuture<Object> result = new CompletableFuture<Object>();
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    complete(result, invoker.invoke(target, args));
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            }
+        };
+        try {
+            executor.execute(task);
+        } catch (RuntimeException e) {
+            // for instance, a RejectedExecutionException
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * @return true if a {@link CompletableFuture} can be returned by the given method
+     */
+    static boolean isAsync(Method method) {
+        Class<?> returnType = method.getReturnType();
+        return returnType != Object.class && returnType.isAssignableFrom(CompletableFuture.class);
+    }
+
+    private static void complete(final CompletableFuture<Object> result, Object value) throws InterruptedException {
+        if (value instanceof CompletionStage) {
+            CompletionStage<?> stage = (CompletionStage<?>) value;
+            stage.whenComplete(new BiConsumer<Object, Throwable>() {
+                @Override
+                public void accept(Object stageValue, Throwable e) {
+                    if (e != null) {
+                        result.completeExceptionally(e);
+                    } else {
+                        result.complete(stageValue);
+                    }
+                }
+            });
+        } else if (value instanceof Future) {
+            try {
+                // plain futures can only be waited for, we are already in the executor anyway
+                result.complete(((Future<?>) value).get());
+            } catch (ExecutionException e) {
+                result.completeExceptionally(e.getCause());
+            }
+        } else {
+            result.complete(value);
+        }
+    }
+}
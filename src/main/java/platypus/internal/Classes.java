@@ -1,23 +1,49 @@
 package platypus.internal;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
-import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Sets;
-
 // Based on org.apache.commons.lang.ClassUtils.getAllInterfaces(Class)
 public class Classes {
 
+    // cached values are JDK collections holding only classes visible from the
+    // key's class loader, so a class loaded by a parent class loader never
+    // keeps the class loader of platypus, or any child class loader, alive
+    private static final ClassValue<Set<Class<?>>> INTERFACES_CLOSURE = new ClassValue<Set<Class<?>>>() {
+        @Override
+        protected Set<Class<?>> computeValue(Class<?> cls) {
+            Set<Class<?>> closure = new LinkedHashSet<Class<?>>();
+            closure.add(cls);
+            closure.addAll(getAllInterfaces(cls));
+            return Collections.unmodifiableSet(closure);
+        }
+    };
+
+    private static final ClassValue<Set<Class<?>>> ALL_INTERFACES = new ClassValue<Set<Class<?>>>() {
+        @Override
+        protected Set<Class<?>> computeValue(Class<?> cls) {
+            // a LinkHashSet will mantain the order
+            Set<Class<?>> interfacesFound = new LinkedHashSet<Class<?>>();
+            getAllInterfaces(cls, interfacesFound);
+            return Collections.unmodifiableSet(interfacesFound);
+        }
+    };
+
+    private static final ClassValue<Boolean> HAS_DECLARED_METHODS = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> cls) {
+            return cls.getDeclaredMethods().length > 0;
+        }
+    };
+
     /**
      *
-     * @return all interfaces plus root
+     * @return all interfaces plus root, computed only once per class
      */
     public static Set<Class<?>> getInterfacesClosure(Class<?> cls) {
-        Set<Class<?>> closure = Sets.newLinkedHashSet();
-        closure.add(cls);
-        closure.addAll(getAllInterfaces(cls));
-        return ImmutableSet.copyOf(closure);
+        return INTERFACES_CLOSURE.get(cls);
     }
 
     /**
@@ -29,6 +55,8 @@ public class Classes {
      * superclass is considered in the same way. Duplicates are ignored,
      * so the order is maintained.</p>
      *
+     * <p>The returned set is unmodifiable and computed only once per class.</p>
+     *
      * @param cls  the class to look up, may be <code>null</code>
      * @return the <code>List</code> of interfaces in order,
      *  <code>null</code> if null input
@@ -38,11 +66,14 @@ public class Classes {
             return null;
         }
 
-        // a LinkHashSet will mantain the order
-        Set<Class<?>> interfacesFound = Sets.newLinkedHashSet();
-        getAllInterfaces(cls, interfacesFound);
+        return ALL_INTERFACES.get(cls);
+    }
 
-        return ImmutableSet.copyOf(interfacesFound);
+    /**
+     * @return true if the class declares at least one method
+     */
+    public static boolean hasDeclaredMethods(Class<?> cls) {
+        return HAS_DECLARED_METHODS.get(cls);
     }
 
     /**
@@ -57,7 +88,7 @@ public class Classes {
 
             for (int i = 0; i < interfaces.length; i++) {
                 interfacesFound.add(interfaces[i]);
-                getAllInterfaces(interfaces[i], interfacesFound);
+                interfacesFound.addAll(getAllInterfaces(interfaces[i]));
             }
 
             cls = cls.getSuperclass();
@@ -0,0 +1,502 @@
+package platypus.internal;
+
+import static com.google.common.collect.FluentIterable.from;
+import static java.lang.String.format;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import platypus.IncompleteImplementationException;
+import platypus.Mixin;
+import platypus.MixinInterceptor;
+
+import com.google.common.base.Function;
+import com.google.common.base.Joiner;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Predicate;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.primitives.Ints;
+
+/**
+ * Dispatch information shared by all instances of a mixin class whose
+ * initializers declare the same implementations in the same order.
+ *
+ * <p>
+ * Each declared implementation gets a slot, and instances just need to keep
+ * an array with the implementation of each slot. The last slot always holds
+ * the {@link ObjectImplementation}.
+ * </p>
+ *
+ * @author rui.figueira@gmail.com (Rui Figueira)
+ */
+public class DispatchPlan {
+
+    static final Logger LOGGER = LoggerFactory.getLogger(DispatchPlan.class);
+
+    static final Predicate<Class<?>> WITH_DECLARED_METHODS_FN = new Predicate<Class<?>>() {
+
+        @Override
+        public boolean apply(Class<?> clazz) {
+            return Classes.hasDeclaredMethods(clazz);
+        }
+    };
+
+    static final Function<Class<?>, Iterable<Class<?>>> ALL_INTFS_FN = new Function<Class<?>, Iterable<Class<?>>>() {
+        @Override
+        public Iterable<Class<?>> apply(Class<?> clazz) {
+            return Classes.getInterfacesClosure(clazz);
+        }
+    };
+
+    /**
+     * An implementation declaration, without its instance provider.
+     */
+    public static final class Binding {
+
+        private final Set<Class<?>> intfs;
+        private final boolean overrides;
+        private final boolean handler;
+        private final boolean intercepts;
+
+        private Binding(Set<Class<?>> intfs, boolean overrides, boolean handler, boolean intercepts) {
+            this.intfs = intfs;
+            this.overrides = overrides;
+            this.handler = handler;
+            this.intercepts = intercepts;
+        }
+
+        public static Binding implement(Collection<Class<?>> intfs) {
+            return new Binding(ImmutableSet.copyOf(intfs), false, false, false);
+        }
+
+        public static Binding override(Collection<Class<?>> intfs) {
+            return new Binding(ImmutableSet.copyOf(intfs), true, false, false);
+        }
+
+        /**
+         * @return a binding for all interfaces not implemented by prior bindings
+         */
+        public static Binding implementRemainers() {
+            return new Binding(null, false, false, false);
+        }
+
+        /**
+         * @return a binding of a {@link MixinInterceptor} for the methods of the given interfaces
+         */
+        public static Binding intercept(Collection<Class<?>> intfs) {
+            return new Binding(ImmutableSet.copyOf(intfs), false, false, true);
+        }
+
+        /**
+         * @return the same binding, but implemented by an {@link InvocationHandler} instead of an object
+         */
+        public Binding withHandler() {
+            Preconditions.checkState(!intercepts, "Interceptors cannot be invocation handlers");
+            return new Binding(intfs, overrides, true, false);
+        }
+
+        public boolean isRemainers() {
+            return intfs == null;
+        }
+
+        public boolean isHandler() {
+            return handler;
+        }
+
+        public boolean isInterceptor() {
+            return intercepts;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(intfs, overrides, handler, intercepts);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Binding)) return false;
+            Binding other = (Binding) obj;
+            return overrides == other.overrides && handler == other.handler && intercepts == other.intercepts && Objects.equal(intfs, other.intfs);
+        }
+
+        @Override
+        public String toString() {
+            String kind = intercepts ? "intercept" : overrides ? "override" : "implement";
+            return format("%s(%s)%s", kind, isRemainers() ? "remainers" : Joiner.on(", ").join(intfs), handler ? " with handler" : "");
+        }
+    }
+
+    /**
+     * The slot of a method implementation and how to invoke it.
+     */
+    public static final class MethodDispatch {
+
+        private final int slot;
+        private final MethodInvoker invoker;
+        private final int[] interceptorSlots;
+
+        MethodDispatch(int slot, MethodInvoker invoker, int[] interceptorSlots) {
+            this.slot = slot;
+            this.invoker = invoker;
+            this.interceptorSlots = interceptorSlots;
+        }
+
+        public int getSlot() {
+            return slot;
+        }
+
+        public MethodInvoker getInvoker() {
+            return invoker;
+        }
+
+        /**
+         * @return the slots of the interceptors of this method, outermost
+         *         first, or null if it is not intercepted
+         */
+        public int[] getInterceptorSlots() {
+            return interceptorSlots;
+        }
+    }
+
+    private static final Set<Method> OBJECT_METHODS;
+    static {
+        try {
+            OBJECT_METHODS = ImmutableSet.of(
+                    Object.class.getMethod("equals", Object.class),
+                    Object.class.getMethod("hashCode"),
+                    Object.class.getMethod("toString"));
+        } catch (NoSuchMethodException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * @return true if the method is one of the {@code Object} methods that
+     *         mixin instances dispatch to their implementations
+     */
+    static boolean isDispatchedObjectMethod(Method method) {
+        return OBJECT_METHODS.contains(method);
+    }
+
+    private final MixinClassImpl<?> mixinClass;
+    private final List<Binding> bindings;
+    private final ImmutableMap<Class<?>, Integer> slotsByIntf;
+    private final ImmutableMap<Method, MethodDispatch> dispatches;
+    private final int[] usedSlots;
+    private final int objectDelegateSlot;
+    private final int objectSlot;
+    private final int[] fieldSlots;
+    private final Constructor<?>[] handlerProxyConstructors;
+    private final boolean intercepted;
+    private final boolean[] interceptedFields;
+    private final Constructor<?> interceptorProxyConstructor;
+
+    public DispatchPlan(MixinClassImpl<?> mixinClass, List<Binding> bindings) {
+        this.mixinClass = mixinClass;
+        this.bindings = ImmutableList.copyOf(bindings);
+        this.objectSlot = bindings.size();
+
+        Set<Class<?>> allMixinIntfs = mixinClass.allIntfs;
+        List<Set<Class<?>>> bindingsIntfs = getImplementedInterfaces(allMixinIntfs, bindings);
+        checkCompleteImplementation(allMixinIntfs, bindingsIntfs);
+
+        LOGGER.trace("Computing dispatch plan for [{}]", allMixinIntfs);
+        Map<Class<?>, Integer> slots = Maps.newLinkedHashMap();
+        Map<Class<?>, int[]> interceptors = Maps.newHashMap();
+        for (int slot = 0; slot < bindings.size(); slot++) {
+            if (bindings.get(slot).intercepts) {
+                for (Class<?> intf : closure(bindings.get(slot).intfs)) {
+                    if (allMixinIntfs.contains(intf)) {
+                        LOGGER.trace("[{}] is intercepted by instance provider #{}", intf, slot);
+                        int[] intfInterceptors = interceptors.get(intf);
+                        interceptors.put(intf, intfInterceptors == null ? new int[] { slot } : Ints.concat(intfInterceptors, new int[] { slot }));
+                    }
+                }
+                continue;
+            }
+
+            boolean overrides = bindings.get(slot).overrides;
+            for (Class<?> intf : closure(bindingsIntfs.get(slot))) {
+                if (!(allMixinIntfs.contains(intf) || intf == Object.class)) {
+                    LOGGER.trace("This Mixin class does not implement [{}], skipping its instance provider", intf);
+                    continue;
+                }
+                if (slots.containsKey(intf) && !overrides) {
+                    LOGGER.trace("[{}] was already implemented by prior instance provider, skipping this ones", intf);
+                } else {
+                    LOGGER.trace("[{}] is {} by instance provider #{}", intf, slots.containsKey(intf) ? "overriden" : "implemented", slot);
+                    slots.put(intf, slot);
+                }
+            }
+        }
+
+        this.usedSlots = Ints.toArray(ImmutableSet.copyOf(slots.values()));
+        this.intercepted = !interceptors.isEmpty();
+        this.objectDelegateSlot = slots.containsKey(Object.class) ? slots.get(Object.class) : -1;
+        slots.put(Object.class, objectSlot);
+        this.slotsByIntf = ImmutableMap.copyOf(slots);
+
+        // generated mixin classes call implementations directly, they only need invokers for intercepted methods
+        this.dispatches = getDispatches(mixinClass, mixinClass.generatedClass == null ? allMixinIntfs : interceptors.keySet(), slots, interceptors);
+
+        if (mixinClass.generatedClass != null) {
+            List<Class<?>> fieldIntfs = mixinClass.generatedClass.getFieldInterfaces();
+            this.fieldSlots = new int[fieldIntfs.size()];
+            for (int i = 0; i < fieldSlots.length; i++) {
+                Integer slot = slots.get(fieldIntfs.get(i));
+                fieldSlots[i] = slot == null ? -1 : slot;
+            }
+            this.handlerProxyConstructors = getHandlerProxyConstructors(mixinClass, bindings, fieldIntfs, fieldSlots);
+
+            // intercepted fields get a proxy that runs the interceptor chains
+            this.interceptedFields = new boolean[fieldSlots.length];
+            Set<Class<?>> interceptedIntfs = Sets.newLinkedHashSet();
+            for (int i = 1; i < fieldSlots.length; i++) {
+                interceptedFields[i] = interceptors.containsKey(fieldIntfs.get(i));
+                if (interceptedFields[i]) interceptedIntfs.add(fieldIntfs.get(i));
+            }
+            this.interceptorProxyConstructor = interceptedIntfs.isEmpty() ? null : MixinClassImpl.getProxyConstructor(getClassLoader(mixinClass), interceptedIntfs);
+        } else {
+            this.fieldSlots = null;
+            this.handlerProxyConstructors = null;
+            this.interceptedFields = null;
+            this.interceptorProxyConstructor = null;
+        }
+    }
+
+    private static ClassLoader getClassLoader(MixinClassImpl<?> mixinClass) {
+        return mixinClass.intfs.iterator().next().getClassLoader();
+    }
+
+    /**
+     * Generated mixin classes keep implementations in interface typed fields,
+     * so handlers are wrapped into a proxy implementing the field interfaces
+     * of their slot.
+     */
+    private static Constructor<?>[] getHandlerProxyConstructors(MixinClassImpl<?> mixinClass, List<Binding> bindings, List<Class<?>> fieldIntfs, int[] fieldSlots) {
+        Constructor<?>[] constructors = new Constructor<?>[bindings.size()];
+        for (int slot = 0; slot < bindings.size(); slot++) {
+            if (!bindings.get(slot).handler) continue;
+
+            Set<Class<?>> slotIntfs = Sets.newLinkedHashSet();
+            for (int i = 1; i < fieldSlots.length; i++) {
+                if (fieldSlots[i] == slot) slotIntfs.add(fieldIntfs.get(i));
+            }
+            if (!slotIntfs.isEmpty()) {
+                constructors[slot] = MixinClassImpl.getProxyConstructor(getClassLoader(mixinClass), slotIntfs);
+            }
+        }
+        return constructors;
+    }
+
+    private static ImmutableMap<Method, MethodDispatch> getDispatches(MixinClassImpl<?> mixinClass, Set<Class<?>> intfs, Map<Class<?>, Integer> slots, Map<Class<?>, int[]> interceptors) {
+        Map<Method, MethodDispatch> dispatches = Maps.newLinkedHashMap();
+        if (mixinClass.generatedClass == null) {
+            for (Method method : OBJECT_METHODS) {
+                dispatches.put(method, new MethodDispatch(slots.get(Object.class), mixinClass.getInvoker(method), null));
+            }
+        }
+        for (Class<?> intf : intfs) {
+            for (Method method : intf.getMethods()) {
+                Integer slot = slots.get(method.getDeclaringClass());
+                if (slot != null && !Modifier.isStatic(method.getModifiers()) && !dispatches.containsKey(method)) {
+                    dispatches.put(method, new MethodDispatch(slot, mixinClass.getInvoker(method), interceptors.get(method.getDeclaringClass())));
+                }
+            }
+        }
+        return ImmutableMap.copyOf(dispatches);
+    }
+
+    /**
+     * @return the interfaces declared by each binding, with remainers already resolved
+     */
+    static List<Set<Class<?>>> getImplementedInterfaces(Set<Class<?>> allMixinIntfs, List<Binding> bindings) {
+        List<Set<Class<?>>> bindingsIntfs = Lists.newArrayListWithCapacity(bindings.size());
+        for (Binding binding : bindings) {
+            if (binding.intercepts) {
+                // interceptors do not implement anything
+                bindingsIntfs.add(ImmutableSet.<Class<?>>of());
+            } else {
+                bindingsIntfs.add(binding.isRemainers() ? getRemainers(allMixinIntfs, bindingsIntfs) : binding.intfs);
+            }
+        }
+        return bindingsIntfs;
+    }
+
+    static Set<Class<?>> getRemainers(Set<Class<?>> allMixinIntfs, List<Set<Class<?>>> bindingsIntfs) {
+        Set<Class<?>> allProvidersIntfs = Sets.newHashSet();
+        for (Set<Class<?>> intfs : bindingsIntfs) {
+            allProvidersIntfs.addAll(closure(intfs));
+        }
+        return from(Sets.difference(allMixinIntfs, allProvidersIntfs)).filter(WITH_DECLARED_METHODS_FN).toSet();
+    }
+
+    private static void checkCompleteImplementation(Set<Class<?>> allMixinIntfs, List<Set<Class<?>>> bindingsIntfs) {
+        Set<Class<?>> differences = getRemainers(allMixinIntfs, bindingsIntfs);
+        if (!differences.isEmpty()) {
+            throw new IncompleteImplementationException(format("The following interfaces are  missing: %s", Joiner.on(", ").join(differences)));
+        }
+    }
+
+    private static Set<Class<?>> closure(Set<Class<?>> intfs) {
+        return from(intfs).transformAndConcat(ALL_INTFS_FN).toSet();
+    }
+
+    public List<Binding> getBindings() {
+        return bindings;
+    }
+
+    /**
+     * @return the number of slots of each instance implementations array
+     */
+    public int size() {
+        return objectSlot + 1;
+    }
+
+    public MethodDispatch getDispatch(Method method) {
+        MethodDispatch dispatch = dispatches.get(method);
+        if (dispatch == null) {
+            Integer slot = slotsByIntf.get(method.getDeclaringClass());
+            dispatch = slot == null ? null : new MethodDispatch(slot, mixinClass.getInvoker(method), null);
+        }
+        return dispatch;
+    }
+
+    /**
+     * @return true if the implementation of the given slot is an {@link InvocationHandler}
+     */
+    public boolean isHandler(int slot) {
+        return slot < bindings.size() && bindings.get(slot).handler;
+    }
+
+    /**
+     * @return a proxy calling the handler of the given slot, implementing the
+     *         generated mixin class field interfaces of that slot, or null if
+     *         no field is implemented by it
+     */
+    Object newHandlerProxy(int slot, InvocationHandler handler) {
+        Constructor<?> constructor = handlerProxyConstructors[slot];
+        if (constructor == null) return null;
+        try {
+            return constructor.newInstance(handler);
+        } catch (Exception e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    /**
+     * @return true if the methods of the given generated mixin class field are intercepted
+     */
+    boolean isInterceptedField(int fieldIndex) {
+        return interceptedFields[fieldIndex];
+    }
+
+    /**
+     * @return true if some method is intercepted
+     */
+    boolean hasInterceptors() {
+        return intercepted;
+    }
+
+    /**
+     * @return a proxy implementing all intercepted generated mixin class field interfaces
+     */
+    Object newInterceptorProxy(InvocationHandler handler) {
+        try {
+            return interceptorProxyConstructor.newInstance(handler);
+        } catch (Exception e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    public Integer getSlot(Class<?> intf) {
+        return slotsByIntf.get(intf);
+    }
+
+    /**
+     * @return the slot of the implementation that {@link ObjectImplementation} delegates to, or -1
+     */
+    int getObjectDelegateSlot() {
+        return objectDelegateSlot;
+    }
+
+    /**
+     * @return for each field of the generated mixin class, the slot of its implementation
+     */
+    int[] getFieldSlots() {
+        return fieldSlots;
+    }
+
+    /**
+     * Stores the {@link ObjectImplementation} in its slot.
+     */
+    ObjectImplementation initObjectImplementation(Object[] impls) {
+        ObjectImplementation objectImpl = new ObjectImplementation(null, mixinClass.cacheHashCode);
+        setObjectDelegate(objectImpl, impls);
+        impls[objectSlot] = objectImpl;
+        return objectImpl;
+    }
+
+    /**
+     * @return the {@link ObjectImplementation} in its slot
+     */
+    ObjectImplementation getObjectImplementation(Object[] impls) {
+        return (ObjectImplementation) impls[objectSlot];
+    }
+
+    /**
+     * Updates the {@link ObjectImplementation} delegate after implementations were replaced.
+     */
+    void rebindObjectImplementation(Object[] impls) {
+        if (objectDelegateSlot >= 0) {
+            setObjectDelegate(getObjectImplementation(impls), impls);
+        }
+    }
+
+    private void setObjectDelegate(ObjectImplementation objectImpl, Object[] impls) {
+        if (objectDelegateSlot < 0) return;
+
+        Object delegate = impls[objectDelegateSlot];
+        if (delegate != null && isHandler(objectDelegateSlot)) {
+            objectImpl.setHandler((InvocationHandler) delegate);
+        } else {
+            objectImpl.setDelegate(delegate);
+        }
+    }
+
+    /**
+     * Sets the mixin instance in all {@link Mixin.Impl} implementations.
+     */
+    void initImplementationsProxy(Object[] impls, Object instance) {
+        for (int i = 0; i < usedSlots.length; i++) {
+            Object impl = impls[usedSlots[i]];
+            if (impl instanceof AsyncInvocationHandler) impl = ((AsyncInvocationHandler) impl).getTarget();
+            if (impl instanceof Mixin.Impl && !containsBefore(impls, i, impl)) {
+                ((Mixin.Impl) impl).setProxy(instance);
+            }
+        }
+    }
+
+    private boolean containsBefore(Object[] impls, int index, Object impl) {
+        for (int i = 0; i < index; i++) {
+            if (impls[usedSlots[i]] == impl) return true;
+        }
+        return false;
+    }
+}
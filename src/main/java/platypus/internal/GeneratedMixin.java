@@ -0,0 +1,9 @@
+package platypus.internal;
+
+/**
+ * Marker interface implemented by all mixin classes generated by {@link GeneratedMixinClass}.
+ *
+ * @author rui.figueira@gmail.com (Rui Figueira)
+ */
+public interface GeneratedMixin {
+}
@@ -0,0 +1,661 @@
+package platypus.internal;
+
+import static com.google.common.base.Throwables.propagate;
+import static org.objectweb.asm.Opcodes.AALOAD;
+import static org.objectweb.asm.Opcodes.ACC_FINAL;
+import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_STATIC;
+import static org.objectweb.asm.Opcodes.ACC_SUPER;
+import static org.objectweb.asm.Opcodes.ACC_VOLATILE;
+import static org.objectweb.asm.Opcodes.ACONST_NULL;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ASTORE;
+import static org.objectweb.asm.Opcodes.ATHROW;
+import static org.objectweb.asm.Opcodes.CHECKCAST;
+import static org.objectweb.asm.Opcodes.DUP;
+import static org.objectweb.asm.Opcodes.F_SAME1;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.GETSTATIC;
+import static org.objectweb.asm.Opcodes.IFNONNULL;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.INVOKEINTERFACE;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.IRETURN;
+import static org.objectweb.asm.Opcodes.ISTORE;
+import static org.objectweb.asm.Opcodes.LLOAD;
+import static org.objectweb.asm.Opcodes.LSTORE;
+import static org.objectweb.asm.Opcodes.POP;
+import static org.objectweb.asm.Opcodes.PUTFIELD;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.SWAP;
+import static org.objectweb.asm.Opcodes.V1_6;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import platypus.MixinInvocationListener;
+import platypus.MixinType;
+import platypus.processor.MixinTypeProcessor;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * A class generated at runtime to implement the interfaces of a mixin class.
+ *
+ * <p>
+ * The generated class holds one final field per implemented interface and
+ * each of its methods just calls the same method on the corresponding field,
+ * so that calls can be inlined by the JIT like any hand-written delegation.
+ * </p>
+ *
+ * @author rui.figueira@gmail.com (Rui Figueira)
+ */
+public class GeneratedMixinClass<T> {
+
+    private static final String PACKAGE_NAME = "platypus.internal.generated";
+    private static final String OBJECT_INTERNAL_NAME = Type.getInternalName(Object.class);
+    private static final String CONSTRUCTOR_DESC = Type.getMethodDescriptor(Type.VOID_TYPE, Type.getType(Object[].class));
+    private static final Set<String> OBJECT_METHODS = ImmutableSet.of(
+            "equals(Ljava/lang/Object;)Z",
+            "hashCode()I",
+            "toString()Ljava/lang/String;");
+
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+
+    private static final String LAZY_FIELD = "lazy";
+    private static final String LAZY_INTERNAL_NAME = Type.getInternalName(LazyImplementations.class);
+    private static final String RESOLVE_DESC = Type.getMethodDescriptor(Type.getType(Object.class), Type.INT_TYPE);
+
+    private static final String RECORDER_FIELD = "recorder";
+    private static final String RECORDER_INTERNAL_NAME = Type.getInternalName(InvocationRecorder.class);
+    private static final String RECORD_DESC = Type.getMethodDescriptor(Type.VOID_TYPE, Type.INT_TYPE, Type.LONG_TYPE, Type.getType(Throwable.class));
+
+    /**
+     * Class loader for generated classes. It ensures platypus classes referenced
+     * by generated code are visible even if the parent class loader cannot see them.
+     */
+    private static class DefiningClassLoader extends ClassLoader {
+
+        private static final Map<String, Class<?>> PLATYPUS_CLASSES = ImmutableMap.<String, Class<?>>of(
+                GeneratedMixin.class.getName(), GeneratedMixin.class,
+                LazyImplementations.class.getName(), LazyImplementations.class,
+                InvocationRecorder.class.getName(), InvocationRecorder.class);
+
+        public DefiningClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            Class<?> platypusClass = PLATYPUS_CLASSES.get(name);
+            if (platypusClass != null) {
+                return platypusClass;
+            }
+            return super.loadClass(name, resolve);
+        }
+
+        public Class<?> define(String name, byte[] bytecode) {
+            return defineClass(name, bytecode, 0, bytecode.length);
+        }
+    }
+
+    /**
+     * Passes the generated mixin instance as the proxy argument of a wrapped
+     * {@link Proxy} invocation handler, just like {@link ProxyInvocationHandler} does.
+     */
+    static class ProxyBridgeHandler implements InvocationHandler {
+
+        private final InvocationHandler handler;
+        private Object mixin;
+
+        public ProxyBridgeHandler(InvocationHandler handler, Object mixin) {
+            this.handler = handler;
+            this.mixin = mixin;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            return handler.invoke(mixin, method, args);
+        }
+    }
+
+    /**
+     * Runs the interceptor chains of the intercepted fields of a generated
+     * mixin instance, passing it as the intercepted mixin.
+     */
+    static class InterceptorBridgeHandler implements InvocationHandler {
+
+        private final DispatchPlan plan;
+        private final Object[] impls;
+        private final LazyImplementations lazyImpls;
+        private Object mixin;
+
+        public InterceptorBridgeHandler(DispatchPlan plan, Object[] impls, LazyImplementations lazyImpls, Object mixin) {
+            this.plan = plan;
+            this.impls = impls;
+            this.lazyImpls = lazyImpls;
+            this.mixin = mixin;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            return new InterceptedInvocation(plan, plan.getDispatch(method), mixin, method, args, impls, lazyImpls).proceed();
+        }
+    }
+
+    private final List<Class<?>> fieldIntfs;
+    private final Constructor<T> constructor;
+    private final boolean lazy;
+    private final boolean rebindable;
+    // the object implementation field, followed by the implementation fields if they are not final
+    private final Field[] fields;
+
+    protected GeneratedMixinClass(List<Class<?>> fieldIntfs, Constructor<T> constructor, boolean lazy, boolean rebindable) {
+        this.fieldIntfs = fieldIntfs;
+        this.constructor = constructor;
+        this.lazy = lazy;
+        this.rebindable = rebindable;
+        this.fields = new Field[rebindable ? fieldIntfs.size() : 1];
+        try {
+            for (int i = 0; i < fields.length; i++) {
+                fields[i] = constructor.getDeclaringClass().getDeclaredField(fieldName(i));
+                fields[i].setAccessible(true);
+            }
+        } catch (NoSuchFieldException e) {
+            throw propagate(e);
+        }
+    }
+
+    /**
+     * @return true if all interfaces and their super interfaces are public and
+     *         visible from the given class loader
+     */
+    public static boolean canGenerate(ClassLoader loader, Set<Class<?>> allIntfs) {
+        for (Class<?> intf : allIntfs) {
+            if (!Modifier.isPublic(intf.getModifiers())) {
+                return false;
+            }
+            try {
+                if (Class.forName(intf.getName(), false, loader) != intf) {
+                    return false;
+                }
+            } catch (ClassNotFoundException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param lazy if true, fields are only set when their implementation is
+     *        needed for the first time, using {@link LazyImplementations#resolve(int)}
+     * @param listener if not null, generated methods notify it after each call
+     */
+    public static <T> GeneratedMixinClass<T> generate(ClassLoader loader, Set<Class<?>> intfs, boolean lazy, MixinInvocationListener listener) {
+        return generate(loader, intfs, lazy, false, listener);
+    }
+
+    /**
+     * @param rebindable if true, implementation fields are not final, so that
+     *        {@link #rebind(Object, DispatchPlan, Object[], boolean[])} can
+     *        replace them, at the cost of the JIT no longer trusting them
+     */
+    public static <T> GeneratedMixinClass<T> generate(ClassLoader loader, Set<Class<?>> intfs, boolean lazy, boolean rebindable, MixinInvocationListener listener) {
+        Collection<Method> methods = getMethods(intfs);
+
+        // Object.class comes first, it holds the ObjectImplementation
+        Set<Class<?>> fieldIntfs = Sets.newLinkedHashSet();
+        fieldIntfs.add(Object.class);
+        for (Method method : methods) {
+            fieldIntfs.add(method.getDeclaringClass());
+        }
+
+        String name = PACKAGE_NAME + ".$Mixin" + COUNTER.incrementAndGet();
+        byte[] bytecode = generateBytecode(name, intfs, ImmutableList.copyOf(fieldIntfs), methods, lazy, rebindable, listener != null);
+
+        try {
+            Class<T> clazz = Casts.unsafeCast(new DefiningClassLoader(loader).define(name, bytecode));
+            if (listener != null) {
+                Field recorder = clazz.getDeclaredField(RECORDER_FIELD);
+                recorder.setAccessible(true);
+                recorder.set(null, new InvocationRecorder(listener, ImmutableList.copyOf(Iterables.concat(getObjectMethods(), methods))));
+            }
+            return new GeneratedMixinClass<T>(ImmutableList.copyOf(fieldIntfs), clazz.getConstructor(Object[].class), lazy, rebindable);
+        } catch (NoSuchMethodException e) {
+            throw propagate(e);
+        } catch (NoSuchFieldException e) {
+            throw propagate(e);
+        } catch (IllegalAccessException e) {
+            throw propagate(e);
+        }
+    }
+
+    /**
+     * Looks for a mixin class generated at compile time by
+     * {@link MixinTypeProcessor}. Those classes only implement a single
+     * interface and are neither lazy nor recording.
+     *
+     * @return the precompiled mixin class, or null if there's none
+     */
+    public static <T> GeneratedMixinClass<T> precompiled(Set<Class<?>> intfs, boolean lazy, MixinInvocationListener listener) {
+        if (lazy || listener != null || intfs.size() != 1) return null;
+
+        Class<?> intf = intfs.iterator().next();
+        // avoids looking up classes that cannot exist
+        if (intf.getAnnotation(MixinType.class) == null) return null;
+        try {
+            Class<T> clazz = Casts.unsafeCast(Class.forName(intf.getName() + MixinTypeProcessor.CLASS_NAME_SUFFIX, false, intf.getClassLoader()));
+            if (!intf.isAssignableFrom(clazz) || !GeneratedMixin.class.isAssignableFrom(clazz)) return null;
+
+            List<Class<?>> fieldIntfs = Lists.newArrayList();
+            for (int i = 0; ; i++) {
+                try {
+                    fieldIntfs.add(clazz.getDeclaredField(fieldName(i)).getType());
+                } catch (NoSuchFieldException e) {
+                    break;
+                }
+            }
+            Constructor<T> constructor = clazz.getConstructor(Object[].class);
+            // classes of non-public interfaces are not public either
+            constructor.setAccessible(true);
+            return new GeneratedMixinClass<T>(ImmutableList.copyOf(fieldIntfs), constructor, false, false);
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (NoSuchMethodException e) {
+            throw propagate(e);
+        }
+    }
+
+    List<Class<?>> getFieldInterfaces() {
+        return fieldIntfs;
+    }
+
+    /**
+     * @param plan the dispatch plan of the implementations
+     * @param impls the implementations, one per dispatch plan slot
+     */
+    public T newInstance(DispatchPlan plan, Object[] impls) {
+        Preconditions.checkState(!lazy);
+        int[] fieldSlots = plan.getFieldSlots();
+        Object[] fields = new Object[fieldIntfs.size()];
+        Object[] bridged = null;
+        List<ProxyBridgeHandler> bridges = null;
+        InterceptorBridgeHandler interceptorBridge = null;
+        Object interceptorProxy = null;
+
+        for (int i = 0; i < fields.length; i++) {
+            int slot = fieldSlots[i];
+            Object impl = slot < 0 ? null : impls[slot];
+            if (plan.isInterceptedField(i)) {
+                // intercepted fields share a proxy that reads impls, so it never needs to be rebound
+                if (interceptorProxy == null) {
+                    interceptorBridge = new InterceptorBridgeHandler(plan, impls, null, null);
+                    interceptorProxy = plan.newInterceptorProxy(interceptorBridge);
+                }
+                impl = interceptorProxy;
+            } else if (impl != null && needsBridge(plan, slot, impl)) {
+                // handlers must receive this mixin as their proxy, so we bridge them
+                if (bridged == null) {
+                    bridged = new Object[impls.length];
+                    bridges = Lists.newArrayList();
+                }
+                if (bridged[slot] == null) {
+                    bridged[slot] = bridge(plan, slot, impl, null, bridges);
+                }
+                impl = bridged[slot];
+            }
+            fields[i] = impl;
+        }
+
+        T instance = newInstance(fields);
+        if (bridges != null) {
+            for (ProxyBridgeHandler bridge : bridges) {
+                bridge.mixin = instance;
+            }
+        }
+        if (interceptorBridge != null) interceptorBridge.mixin = instance;
+        return instance;
+    }
+
+    /**
+     * @return true if the implementation fields of its instances can be replaced
+     */
+    boolean isRebindable() {
+        return rebindable;
+    }
+
+    boolean isInstance(Object instance) {
+        return constructor.getDeclaringClass().isInstance(instance);
+    }
+
+    /**
+     * @return the object implementation of a mixin instance of this class
+     */
+    ObjectImplementation getObjectImplementation(Object instance) {
+        Preconditions.checkArgument(constructor.getDeclaringClass().isInstance(instance), "%s is not an instance of this mixin class", instance);
+        try {
+            return (ObjectImplementation) fields[0].get(instance);
+        } catch (IllegalAccessException e) {
+            throw propagate(e);
+        }
+    }
+
+    /**
+     * Replaces the field implementations of an instance whose slot was rebound.
+     *
+     * @param rebound whether each slot of {@code impls} holds a new implementation
+     */
+    void rebind(T instance, DispatchPlan plan, Object[] impls, boolean[] rebound) {
+        Preconditions.checkState(!lazy && isRebindable(), "Only classes with non final fields can be rebound");
+        int[] fieldSlots = plan.getFieldSlots();
+        try {
+            for (int i = 1; i < fields.length; i++) {
+                int slot = fieldSlots[i];
+                if (slot < 0 || !rebound[slot] || plan.isInterceptedField(i)) continue;
+
+                Object impl = impls[slot];
+                if (impl != null && needsBridge(plan, slot, impl)) {
+                    impl = bridge(plan, slot, impl, instance, null);
+                }
+                fields[i].set(instance, impl);
+            }
+        } catch (IllegalAccessException e) {
+            throw propagate(e);
+        }
+    }
+
+    /**
+     * @param objectImpl the object implementation, the only one set right away
+     * @param lazyImpls provides the other implementations when needed
+     */
+    public T newLazyInstance(ObjectImplementation objectImpl, LazyImplementations lazyImpls) {
+        Preconditions.checkState(lazy);
+        Object[] fields = new Object[fieldIntfs.size() + 1];
+        fields[0] = objectImpl;
+        fields[fields.length - 1] = lazyImpls;
+        return newInstance(fields);
+    }
+
+    /**
+     * @return true if the implementation of the given slot is an invocation handler or a proxy
+     */
+    static boolean needsBridge(DispatchPlan plan, int slot, Object impl) {
+        return plan.isHandler(slot) || Proxy.isProxyClass(impl.getClass());
+    }
+
+    /**
+     * @param bridges if not null, the created bridge handler is added to it,
+     *        so that its mixin can be set later
+     * @return a proxy that calls the invocation handler of the given slot
+     *         implementation, passing the mixin instance as proxy argument
+     */
+    static Object bridge(DispatchPlan plan, int slot, Object impl, Object mixin, List<ProxyBridgeHandler> bridges) {
+        boolean handler = plan.isHandler(slot);
+        ProxyBridgeHandler bridge = new ProxyBridgeHandler(handler ? (InvocationHandler) impl : Proxy.getInvocationHandler(impl), mixin);
+        if (bridges != null) bridges.add(bridge);
+        return handler ?
+                plan.newHandlerProxy(slot, bridge) :
+                Proxy.newProxyInstance(impl.getClass().getClassLoader(), impl.getClass().getInterfaces(), bridge);
+    }
+
+    private T newInstance(Object[] fields) {
+        try {
+            return constructor.newInstance((Object) fields);
+        } catch (InvocationTargetException e) {
+            throw propagate(Preconditions.checkNotNull(e.getTargetException()));
+        } catch (Exception e) {
+            throw propagate(e);
+        }
+    }
+
+    /**
+     * Collects the methods to implement. When several interfaces declare the
+     * same method, the first one to declare it is the one whose implementation
+     * is called, as it happens with {@link Proxy} classes.
+     */
+    private static Collection<Method> getMethods(Set<Class<?>> intfs) {
+        Map<String, Method> methods = Maps.newLinkedHashMap();
+        for (Class<?> intf : intfs) {
+            if (intf == Object.class) continue;
+
+            for (Method method : intf.getMethods()) {
+                if (Modifier.isStatic(method.getModifiers())) continue;
+
+                String signature = method.getName() + Type.getMethodDescriptor(method);
+                if (!OBJECT_METHODS.contains(signature) && !methods.containsKey(signature)) {
+                    methods.put(signature, method);
+                }
+            }
+        }
+        return methods.values();
+    }
+
+    private static List<Method> getObjectMethods() {
+        List<Method> objectMethods = Lists.newArrayList();
+        for (Method method : Object.class.getMethods()) {
+            if (OBJECT_METHODS.contains(method.getName() + Type.getMethodDescriptor(method))) {
+                objectMethods.add(method);
+            }
+        }
+        return objectMethods;
+    }
+
+    private static byte[] generateBytecode(String name, Set<Class<?>> intfs, List<Class<?>> fieldIntfs, Collection<Method> methods, boolean lazy, boolean rebindable, boolean recording) {
+        String internalName = name.replace('.', '/');
+
+        List<String> intfNames = Lists.newArrayList();
+        for (Class<?> intf : intfs) {
+            if (intf != Object.class) {
+                intfNames.add(Type.getInternalName(intf));
+            }
+        }
+        intfNames.add(Type.getInternalName(GeneratedMixin.class));
+
+        // recording methods have exception handlers, whose frames are easier to let ASM compute
+        ClassWriter cw = recording ? new FrameComputingClassWriter() : new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(V1_6, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, internalName, null, OBJECT_INTERNAL_NAME, intfNames.toArray(new String[intfNames.size()]));
+
+        for (int i = 0; i < fieldIntfs.size(); i++) {
+            // lazy fields are set when first needed, and must be safely published
+            int access = lazy && i > 0 ? ACC_PRIVATE | ACC_VOLATILE : rebindable && i > 0 ? ACC_PRIVATE : ACC_PRIVATE | ACC_FINAL;
+            cw.visitField(access, fieldName(i), Type.getDescriptor(fieldIntfs.get(i)), null, null).visitEnd();
+        }
+        if (lazy) {
+            cw.visitField(ACC_PRIVATE | ACC_FINAL, LAZY_FIELD, Type.getObjectType(LAZY_INTERNAL_NAME).getDescriptor(), null, null).visitEnd();
+        }
+        if (recording) {
+            cw.visitField(ACC_PRIVATE | ACC_STATIC, RECORDER_FIELD, Type.getObjectType(RECORDER_INTERNAL_NAME).getDescriptor(), null, null).visitEnd();
+        }
+
+        generateConstructor(cw, internalName, fieldIntfs, lazy);
+
+        // recorded method indexes follow the same order as in generate()
+        int index = 0;
+        for (Method method : getObjectMethods()) {
+            generateForwardingMethod(cw, internalName, method, 0, INVOKEVIRTUAL, false, recording ? index++ : -1);
+        }
+
+        for (Method method : methods) {
+            generateForwardingMethod(cw, internalName, method, fieldIntfs.indexOf(method.getDeclaringClass()), INVOKEINTERFACE, lazy, recording ? index++ : -1);
+        }
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static void generateConstructor(ClassWriter cw, String internalName, List<Class<?>> fieldIntfs, boolean lazy) {
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", CONSTRUCTOR_DESC, null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESPECIAL, OBJECT_INTERNAL_NAME, "<init>", "()V", false);
+
+        // lazy classes only get the object implementation and the lazy implementations
+        int count = lazy ? 1 : fieldIntfs.size();
+        for (int i = 0; i < count; i++) {
+            Class<?> fieldIntf = fieldIntfs.get(i);
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitLdcInsn(i);
+            mv.visitInsn(AALOAD);
+            if (fieldIntf != Object.class) {
+                mv.visitTypeInsn(CHECKCAST, Type.getInternalName(fieldIntf));
+            }
+            mv.visitFieldInsn(PUTFIELD, internalName, fieldName(i), Type.getDescriptor(fieldIntf));
+        }
+        if (lazy) {
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitLdcInsn(fieldIntfs.size());
+            mv.visitInsn(AALOAD);
+            mv.visitTypeInsn(CHECKCAST, LAZY_INTERNAL_NAME);
+            mv.visitFieldInsn(PUTFIELD, internalName, LAZY_FIELD, Type.getObjectType(LAZY_INTERNAL_NAME).getDescriptor());
+        }
+
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * @param recordIndex if not negative, the method notifies the recorder
+     *        with this index after each call
+     */
+    private static void generateForwardingMethod(ClassWriter cw, String internalName, Method method, int fieldIndex, int invokeOpcode, boolean lazy, int recordIndex) {
+        Class<?> owner = method.getDeclaringClass();
+        String desc = Type.getMethodDescriptor(method);
+
+        Class<?>[] exceptionTypes = method.getExceptionTypes();
+        String[] exceptions = new String[exceptionTypes.length];
+        for (int i = 0; i < exceptionTypes.length; i++) {
+            exceptions[i] = Type.getInternalName(exceptionTypes[i]);
+        }
+
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC | ACC_FINAL, method.getName(), desc, null, exceptions);
+        mv.visitCode();
+
+        boolean recording = recordIndex >= 0;
+        Type returnType = Type.getReturnType(method);
+        int startLocal = Type.getArgumentsAndReturnSizes(desc) >> 2;
+        int resultLocal = startLocal + 2;
+        Label tryStart = new Label();
+        Label tryEnd = new Label();
+        Label catchHandler = new Label();
+        if (recording) {
+            // long start = System.nanoTime(); try { ...
+            mv.visitTryCatchBlock(tryStart, tryEnd, catchHandler, null);
+            mv.visitMethodInsn(INVOKESTATIC, "java/lang/System", "nanoTime", "()J", false);
+            mv.visitVarInsn(LSTORE, startLocal);
+            mv.visitLabel(tryStart);
+        }
+
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, internalName, fieldName(fieldIndex), Type.getDescriptor(owner));
+
+        if (lazy) {
+            // if (field == null) field = (Owner) lazy.resolve(fieldIndex);
+            Label resolved = new Label();
+            mv.visitInsn(DUP);
+            mv.visitJumpInsn(IFNONNULL, resolved);
+            mv.visitInsn(POP);
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitFieldInsn(GETFIELD, internalName, LAZY_FIELD, Type.getObjectType(LAZY_INTERNAL_NAME).getDescriptor());
+            mv.visitLdcInsn(fieldIndex);
+            mv.visitMethodInsn(INVOKEVIRTUAL, LAZY_INTERNAL_NAME, "resolve", RESOLVE_DESC, false);
+            mv.visitTypeInsn(CHECKCAST, Type.getInternalName(owner));
+            mv.visitInsn(DUP);
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitInsn(SWAP);
+            mv.visitFieldInsn(PUTFIELD, internalName, fieldName(fieldIndex), Type.getDescriptor(owner));
+            mv.visitLabel(resolved);
+            mv.visitFrame(F_SAME1, 0, null, 1, new Object[] { Type.getInternalName(owner) });
+        }
+
+        int slot = 1;
+        for (Type argType : Type.getArgumentTypes(method)) {
+            mv.visitVarInsn(argType.getOpcode(ILOAD), slot);
+            slot += argType.getSize();
+        }
+
+        mv.visitMethodInsn(invokeOpcode, Type.getInternalName(owner), method.getName(), desc, owner.isInterface());
+
+        if (recording) {
+            // ... recorder.record(index, start, null); } catch (Throwable e) { recorder.record(index, start, e); throw e; }
+            if (returnType.getSort() != Type.VOID) mv.visitVarInsn(returnType.getOpcode(ISTORE), resultLocal);
+            mv.visitLabel(tryEnd);
+            generateRecord(mv, internalName, recordIndex, startLocal, -1);
+            if (returnType.getSort() != Type.VOID) mv.visitVarInsn(returnType.getOpcode(ILOAD), resultLocal);
+            mv.visitInsn(returnType.getOpcode(IRETURN));
+
+            mv.visitLabel(catchHandler);
+            int thrownLocal = resultLocal + returnType.getSize();
+            mv.visitVarInsn(ASTORE, thrownLocal);
+            generateRecord(mv, internalName, recordIndex, startLocal, thrownLocal);
+            mv.visitVarInsn(ALOAD, thrownLocal);
+            mv.visitInsn(ATHROW);
+        } else {
+            mv.visitInsn(returnType.getOpcode(IRETURN));
+        }
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * @param thrownLocal the local with the thrown exception, or -1 if the call returned
+     */
+    private static void generateRecord(MethodVisitor mv, String internalName, int recordIndex, int startLocal, int thrownLocal) {
+        mv.visitFieldInsn(GETSTATIC, internalName, RECORDER_FIELD, Type.getObjectType(RECORDER_INTERNAL_NAME).getDescriptor());
+        mv.visitLdcInsn(recordIndex);
+        mv.visitVarInsn(LLOAD, startLocal);
+        if (thrownLocal < 0) {
+            mv.visitInsn(ACONST_NULL);
+        } else {
+            mv.visitVarInsn(ALOAD, thrownLocal);
+        }
+        mv.visitMethodInsn(INVOKEVIRTUAL, RECORDER_INTERNAL_NAME, "record", RECORD_DESC, false);
+    }
+
+    /**
+     * Computes frames without loading classes. Generated methods never merge
+     * values of different reference types, so no common super class is ever needed.
+     */
+    private static class FrameComputingClassWriter extends ClassWriter {
+
+        public FrameComputingClassWriter() {
+            super(ClassWriter.COMPUTE_FRAMES);
+        }
+
+        @Override
+        protected String getCommonSuperClass(String type1, String type2) {
+            return OBJECT_INTERNAL_NAME;
+        }
+    }
+
+    private static String fieldName(int index) {
+        return "impl" + index;
+    }
+}
@@ -0,0 +1,88 @@
+package platypus.internal;
+
+import static java.lang.String.format;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import platypus.IncompleteImplementationException;
+import platypus.MixinInterceptor;
+import platypus.MixinInvocation;
+import platypus.internal.DispatchPlan.MethodDispatch;
+
+/**
+ * Walks the interceptor chain of a method, precomputed by its
+ * {@link DispatchPlan}, and then calls its implementation.
+ *
+ * @author rui.figueira@gmail.com (Rui Figueira)
+ */
+final class InterceptedInvocation implements MixinInvocation {
+
+    private static final Object[] NO_ARGS = new Object[0];
+
+    private final DispatchPlan plan;
+    private final MethodDispatch dispatch;
+    private final Object mixin;
+    private final Method method;
+    private final Object[] args;
+    private final Object[] impls;
+    private final LazyImplementations lazyImpls;
+    private int index;
+
+    /**
+     * @param impls the implementations, one per dispatch plan slot, or null if all are lazy
+     * @param lazyImpls if not null, provides implementations missing from impls
+     */
+    InterceptedInvocation(DispatchPlan plan, MethodDispatch dispatch, Object mixin, Method method, Object[] args, Object[] impls, LazyImplementations lazyImpls) {
+        this.plan = plan;
+        this.dispatch = dispatch;
+        this.mixin = mixin;
+        this.method = method;
+        this.args = args == null ? NO_ARGS : args;
+        this.impls = impls;
+        this.lazyImpls = lazyImpls;
+    }
+
+    @Override
+    public Object getMixin() {
+        return mixin;
+    }
+
+    @Override
+    public Method getMethod() {
+        return method;
+    }
+
+    @Override
+    public Object[] getArguments() {
+        return args;
+    }
+
+    @Override
+    public Object proceed() throws Throwable {
+        int[] interceptors = dispatch.getInterceptorSlots();
+        int i = index;
+        if (i < interceptors.length) {
+            // restored afterwards, so that the same interceptor can proceed again
+            index = i + 1;
+            try {
+                return ((MixinInterceptor) getImplementation(interceptors[i])).intercept(this);
+            } finally {
+                index = i;
+            }
+        }
+
+        int slot = dispatch.getSlot();
+        Object impl = getImplementation(slot);
+        if (impl == null) throw new IncompleteImplementationException(format("No implementation could be found for %s", method));
+        if (plan.isHandler(slot)) return ((InvocationHandler) impl).invoke(mixin, method, args);
+        if (Proxy.isProxyClass(impl.getClass())) return Proxy.getInvocationHandler(impl).invoke(mixin, method, args);
+        return dispatch.getInvoker().invoke(impl, args);
+    }
+
+    private Object getImplementation(int slot) {
+        Object impl = impls == null ? null : impls[slot];
+        return impl == null && lazyImpls != null ? lazyImpls.get(slot) : impl;
+    }
+}
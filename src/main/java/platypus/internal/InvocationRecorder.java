@@ -0,0 +1,34 @@
+package platypus.internal;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+import platypus.MixinInvocationListener;
+
+/**
+ * Notifies the listener of a generated mixin class. Generated methods only
+ * know their own index, this class maps it to the corresponding method.
+ *
+ * @author rui.figueira@gmail.com (Rui Figueira)
+ */
+public final class InvocationRecorder {
+
+    private final MixinInvocationListener listener;
+    private final Method[] methods;
+
+    InvocationRecorder(MixinInvocationListener listener, List<Method> methods) {
+        this.listener = listener;
+        this.methods = methods.toArray(new Method[methods.size()]);
+    }
+
+    /**
+     * Called by generated mixin classes after each call.
+     *
+     * @param method the index of the invoked method
+     * @param start the {@link System#nanoTime()} before the call
+     * @param thrown the thrown exception, or null
+     */
+    public void record(int method, long start, Throwable thrown) {
+        listener.invoked(methods[method], System.nanoTime() - start, thrown);
+    }
+}
@@ -0,0 +1,103 @@
+package platypus.internal;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import platypus.InstanceProvider;
+import platypus.Mixin;
+
+import com.google.common.collect.Sets;
+
+/**
+ * Implementations of a lazy mixin instance, provided only when one of their
+ * methods is called for the first time.
+ *
+ * <p>
+ * Each provider is called at most once, even if the mixin is used
+ * concurrently, and {@link Mixin.Impl} implementations get their proxy set
+ * before they are visible to any other thread.
+ * </p>
+ *
+ * @author rui.figueira@gmail.com (Rui Figueira)
+ */
+public final class LazyImplementations {
+
+    private final DispatchPlan plan;
+    private final InstanceProvider<?>[] providers;
+    private final AtomicReferenceArray<Object> impls;
+
+    // guarded by this
+    private final Object[] fields;
+    // only allocated for mixins with Mixin.Impl implementations
+    private Set<Object> wired;
+    private Object mixin;
+
+    public LazyImplementations(DispatchPlan plan, InstanceProvider<?>[] providers) {
+        this.plan = plan;
+        this.providers = providers;
+        this.impls = new AtomicReferenceArray<Object>(plan.size());
+        int[] fieldSlots = plan.getFieldSlots();
+        this.fields = fieldSlots == null ? null : new Object[fieldSlots.length];
+    }
+
+    /**
+     * @return the implementation of the given slot, provided only the first
+     *         time it is requested
+     */
+    public Object get(int slot) {
+        Object impl = impls.get(slot);
+        return impl != null ? impl : provide(slot);
+    }
+
+    /**
+     * Called by generated mixin classes.
+     *
+     * @return the value for the given field of the generated mixin instance
+     */
+    public synchronized Object resolve(int fieldIndex) {
+        Object field = fields[fieldIndex];
+        if (field == null) {
+            int slot = plan.getFieldSlots()[fieldIndex];
+            if (plan.isInterceptedField(fieldIndex)) {
+                field = plan.newInterceptorProxy(new GeneratedMixinClass.InterceptorBridgeHandler(plan, null, this, mixin));
+            } else {
+                field = slot < 0 ? null : get(slot);
+            }
+            if (field != null && !plan.isInterceptedField(fieldIndex) && GeneratedMixinClass.needsBridge(plan, slot, field)) {
+                field = GeneratedMixinClass.bridge(plan, slot, field, mixin, null);
+            }
+            fields[fieldIndex] = field;
+        }
+        return field;
+    }
+
+    /**
+     * Sets the mixin instance in all already provided {@link Mixin.Impl}
+     * implementations, as well as in the ones provided from now on.
+     */
+    synchronized void setMixin(Object mixin) {
+        this.mixin = mixin;
+        for (int slot = 0; slot < impls.length(); slot++) {
+            wire(impls.get(slot));
+        }
+    }
+
+    private synchronized Object provide(int slot) {
+        Object impl = impls.get(slot);
+        if (impl == null && slot < providers.length) {
+            impl = providers[slot].provide();
+            wire(impl);
+            impls.set(slot, impl);
+        }
+        return impl;
+    }
+
+    private void wire(Object impl) {
+        if (impl instanceof AsyncInvocationHandler) impl = ((AsyncInvocationHandler) impl).getTarget();
+        if (mixin == null || !(impl instanceof Mixin.Impl)) return;
+        if (wired == null) wired = Sets.newIdentityHashSet();
+        if (wired.add(impl)) {
+            ((Mixin.Impl) impl).setProxy(mixin);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package platypus.internal;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Invokes a method on an implementation with the arguments received by an
+ * {@link java.lang.reflect.InvocationHandler}.
+ *
+ * @author rui.figueira@gmail.com (Rui Figueira)
+ */
+public abstract class MethodInvoker {
+
+    static final Logger LOGGER = LoggerFactory.getLogger(MethodInvoker.class);
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    /**
+     * Uses a {@link MethodHandle} adapted to receive the implementation and
+     * an arguments array, and to return an Object.
+     */
+    private static class MethodHandleInvoker extends MethodInvoker {
+
+        private final MethodHandle handle;
+
+        public MethodHandleInvoker(MethodHandle handle) {
+            int paramCount = handle.type().parameterCount() - 1;
+            // varargs arrive already packed in their array, they must not be collected again
+            this.handle = handle.asFixedArity().asType(MethodType.genericMethodType(paramCount + 1)).asSpreader(Object[].class, paramCount);
+        }
+
+        @Override
+        public Object invoke(Object impl, Object[] args) throws Throwable {
+            return (Object) handle.invokeExact(impl, args);
+        }
+    }
+
+    /**
+     * Skips arguments array spreading for methods with no parameters, which
+     * proxies call with a null arguments array.
+     */
+    private static class NoArgsMethodHandleInvoker extends MethodInvoker {
+
+        private final MethodHandle handle;
+
+        public NoArgsMethodHandleInvoker(MethodHandle handle) {
+            this.handle = handle.asType(MethodType.genericMethodType(1));
+        }
+
+        @Override
+        public Object invoke(Object impl, Object[] args) throws Throwable {
+            return (Object) handle.invokeExact(impl);
+        }
+    }
+
+    private static class ReflectiveInvoker extends MethodInvoker {
+
+        private final Method method;
+
+        public ReflectiveInvoker(Method method) {
+            this.method = method;
+        }
+
+        @Override
+        public Object invoke(Object impl, Object[] args) throws Throwable {
+            try {
+                return method.invoke(impl, args);
+            } catch (InvocationTargetException e) {
+                throw Preconditions.checkNotNull(e.getTargetException());
+            }
+        }
+    }
+
+    public abstract Object invoke(Object impl, Object[] args) throws Throwable;
+
+    /**
+     * @return a method handle based invoker, or a reflective one if the method
+     *         is not accessible through method handles
+     */
+    public static MethodInvoker of(Method method) {
+        try {
+            MethodHandle handle = LOOKUP.unreflect(method);
+            return method.getParameterTypes().length == 0 ? new NoArgsMethodHandleInvoker(handle) : new MethodHandleInvoker(handle);
+        } catch (IllegalAccessException e) {
+            LOGGER.debug("Cannot create a method handle for [{}], it will be reflectively invoked", method);
+            return new ReflectiveInvoker(method);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package platypus.internal;
+
+import static com.google.common.base.Throwables.propagate;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import platypus.MixinBatch;
+import platypus.MixinEngine;
+import platypus.internal.DispatchPlan.MethodDispatch;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Generated instances are called through a single method invoker, which the
+ * JIT turns into a direct call to their forwarding method. Proxy instances
+ * have their implementation resolved once per dispatch plan, and the invoker
+ * calls it directly, unless it is a handler, is intercepted or is lazy.
+ * {@code Object} methods that are not dispatched, like {@code getClass}, are
+ * called on the instances themselves.
+ *
+ * @author rui.figueira@gmail.com (Rui Figueira)
+ */
+class MixinBatchImpl<T> implements MixinBatch<T> {
+
+    // below this number of instances, ranges are not split anymore
+    private static final int PARALLEL_THRESHOLD = 1024;
+
+    private class BatchAction extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<? extends T> instances;
+        private final Object[] results;
+        private final Object[] args;
+        private final int from;
+        private final int to;
+
+        BatchAction(List<? extends T> instances, Object[] results, Object[] args, int from, int to) {
+            this.instances = instances;
+            this.results = results;
+            this.args = args;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                invokeRange(instances, results, args, from, to);
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new BatchAction(instances, results, args, from, middle), new BatchAction(instances, results, args, middle, to));
+            }
+        }
+    }
+
+    private final MixinClassImpl<T> mixinClass;
+    private final Method method;
+    private final MethodInvoker invoker;
+    private final boolean dispatched;
+
+    MixinBatchImpl(MixinClassImpl<T> mixinClass, Method method) {
+        this.mixinClass = mixinClass;
+        this.method = method;
+        this.invoker = mixinClass.getInvoker(method);
+        this.dispatched = method.getDeclaringClass() != Object.class || DispatchPlan.isDispatchedObjectMethod(method);
+    }
+
+    @Override
+    public Method getMethod() {
+        return method;
+    }
+
+    @Override
+    public void invoke(List<? extends T> instances, Object[] results, Object... args) {
+        checkResults(instances, results);
+        invokeRange(instances, results, args, 0, instances.size());
+    }
+
+    @Override
+    public void invokeParallel(List<? extends T> instances, Object[] results, Object... args) {
+        checkResults(instances, results);
+        ForkJoinPool.commonPool().invoke(new BatchAction(instances, results, args, 0, instances.size()));
+    }
+
+    private void invokeRange(List<? extends T> instances, Object[] results, Object[] args, int from, int to) {
+        try {
+            if (mixinClass.engine == MixinEngine.GENERATED || !dispatched) {
+                for (int i = from; i < to; i++) {
+                    results[i] = invoker.invoke(instances.get(i), args);
+                }
+                return;
+            }
+
+            // listeners must see every call, so recording handlers are always called
+            boolean direct = mixinClass.listener == null;
+            DispatchPlan plan = null;
+            MethodDispatch dispatch = null;
+            for (int i = from; i < to; i++) {
+                T instance = instances.get(i);
+                ProxyInvocationHandler<?> handler = (ProxyInvocationHandler<?>) Proxy.getInvocationHandler(instance);
+                if (handler.getDispatchPlan() != plan) {
+                    plan = handler.getDispatchPlan();
+                    dispatch = plan.getDispatch(method);
+                }
+                Object impl = direct ? handler.getDirectImplementation(dispatch) : null;
+                results[i] = impl != null ? invoker.invoke(impl, args) : handler.invoke(instance, method, args);
+            }
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    private static void checkResults(List<?> instances, Object[] results) {
+        Preconditions.checkArgument(results.length >= instances.size(), "results array is shorter than the number of instances");
+    }
+}
@@ -3,27 +3,49 @@ package platypus.internal;
 import static com.google.common.base.Predicates.not;
 import static com.google.common.base.Throwables.propagate;
 import static com.google.common.collect.FluentIterable.from;
+import static java.lang.String.format;
 import static platypus.internal.Casts.unsafeCast;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import platypus.IncompleteImplementationException;
+import platypus.InstanceProvider;
+import platypus.InstanceProviders;
+import platypus.InstanceScope;
+import platypus.Mixin;
+import platypus.MixinBatch;
 import platypus.MixinClass;
+import platypus.MixinEngine;
+import platypus.MixinFactory;
 import platypus.MixinInitializer;
+import platypus.MixinInvocationListener;
+import platypus.Stateless;
+import platypus.internal.DispatchPlan.Binding;
 
 import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 public class MixinClassImpl<T> implements MixinClass<T> {
@@ -38,30 +60,74 @@ public class MixinClassImpl<T> implements MixinClass<T> {
     };
 
     final Set<Class<?>> intfs;
+    final Set<Class<?>> allIntfs;
+    final MixinEngine engine;
+    final boolean lazy;
+    final boolean cacheHashCode;
+    final Executor providerExecutor;
+    final MixinInvocationListener listener;
     final Constructor<T> proxyConst;
+    final GeneratedMixinClass<T> generatedClass;
+    // generated class of pooled instances, only generated for the first pool
+    private volatile GeneratedMixinClass<T> pooledClass;
+    private final ConcurrentMap<List<Binding>, DispatchPlan> dispatchPlans = Maps.newConcurrentMap();
+    private final ConcurrentMap<Method, MethodInvoker> invokers = Maps.newConcurrentMap();
+    private final ConcurrentMap<Class<?>, InstanceProvider<?>> classProviders = Maps.newConcurrentMap();
 
     public MixinClassImpl(Class<?> intf, Class<?> ... others) {
         this(intf, Arrays.asList(others));
     }
 
     public MixinClassImpl(Class<?> intf, Collection<Class<?>> others) {
+        this(MixinEngine.GENERATED, intf, others);
+    }
+
+    public MixinClassImpl(MixinEngine engine, Class<?> intf, Collection<Class<?>> others) {
+        this(engine, false, null, intf, others);
+    }
+
+    public MixinClassImpl(MixinEngine engine, boolean lazy, MixinInvocationListener listener, Class<?> intf, Collection<Class<?>> others) {
+        this(engine, lazy, false, null, listener, intf, others);
+    }
+
+    /**
+     * @param lazy if true, implementations are only provided when first needed
+     * @param cacheHashCode if true, instances compute their hash code only once
+     * @param providerExecutor if not null, the instance providers of each new instance run concurrently on it
+     * @param listener if not null, it gets notified of every call
+     */
+    public MixinClassImpl(MixinEngine engine, boolean lazy, boolean cacheHashCode, Executor providerExecutor, MixinInvocationListener listener, Class<?> intf, Collection<Class<?>> others) {
+        Preconditions.checkNotNull(engine);
         Set<Class<?>> intfs = Sets.newLinkedHashSet(Iterables.concat(Collections.singleton(intf), others));
         Set<Class<?>> notIntfs = from(intfs).filter(not(OBJECT_OR_INTERFACE)).toSet();
 
         Preconditions.checkArgument(notIntfs.isEmpty(), "The following classes are not interfaces or Object.class: %s", Joiner.on(", ").join(notIntfs));
 
         this.intfs = ImmutableSet.copyOf(intfs);
+        this.lazy = lazy;
+        this.cacheHashCode = cacheHashCode;
+        this.providerExecutor = providerExecutor;
+        this.listener = listener;
 
-        try {
-            Class<Class<?>> classClazz = Casts.unsafeCast(Class.class);
-            Class<?>[] intfsArray = Iterables.toArray(intfs, classClazz);
-            proxyConst = unsafeCast(Proxy.getProxyClass(intf.getClassLoader(), intfsArray).getConstructor(InvocationHandler.class));
-        } catch (SecurityException e) {
-            throw propagate(e);
-        } catch (IllegalArgumentException e) {
-            throw propagate(e);
-        } catch (NoSuchMethodException e) {
-            throw propagate(e);
+        this.allIntfs = from(intfs).transformAndConcat(DispatchPlan.ALL_INTFS_FN).toSet();
+
+        ClassLoader loader = intf.getClassLoader();
+        GeneratedMixinClass<T> precompiledClass = engine == MixinEngine.GENERATED ? GeneratedMixinClass.<T>precompiled(this.intfs, lazy, listener) : null;
+        if (precompiledClass != null) {
+            this.engine = MixinEngine.GENERATED;
+            this.generatedClass = precompiledClass;
+            this.proxyConst = null;
+        } else if (engine == MixinEngine.GENERATED && GeneratedMixinClass.canGenerate(loader, allIntfs)) {
+            this.engine = MixinEngine.GENERATED;
+            this.generatedClass = GeneratedMixinClass.generate(loader, this.intfs, lazy, listener);
+            this.proxyConst = null;
+        } else {
+            if (engine == MixinEngine.GENERATED) {
+                LOGGER.debug("Cannot generate a mixin class for [{}], falling back to proxy engine", intfs);
+            }
+            this.engine = MixinEngine.PROXY;
+            this.generatedClass = null;
+            this.proxyConst = getProxyConstructor(loader, intfs);
         }
     }
 
@@ -70,14 +136,326 @@ public class MixinClassImpl<T> implements MixinClass<T> {
         return intfs;
     }
 
+    @Override
+    public MixinEngine getEngine() {
+        return engine;
+    }
+
     @Override
     public T newInstance(MixinInitializer initializer) {
         try {
-            ProxyInvocationHandler<T> proxyInvocationHandler = new ProxyInvocationHandler<T>(this, initializer);
-            return proxyInvocationHandler.getProxy();
+            MixinImplementorImpl<T> implementor = new MixinImplementorImpl<T>(this, initializer);
+            DispatchPlan plan = implementor.getDispatchPlan();
+            return newInstance(plan, implementor.getProviders());
         } catch (Exception e) {
             throw propagate(e);
         }
     }
 
+    @Override
+    public List<T> newInstances(int count, MixinInitializer initializer) {
+        return compile(initializer).newInstances(count);
+    }
+
+    @Override
+    public MixinFactory<T> compile(MixinInitializer initializer) {
+        return new MixinFactoryImpl<T>(this, new MixinImplementorImpl<T>(this, initializer));
+    }
+
+    @Override
+    public MixinBatch<T> batch(Method method) {
+        Preconditions.checkArgument(method.getDeclaringClass() == Object.class || allIntfs.contains(method.getDeclaringClass()), "%s is not a method of this mixin class", method);
+        return new MixinBatchImpl<T>(this, method);
+    }
+
+    /**
+     * @return the dispatch plan for the given bindings, computing it only the
+     *         first time these bindings are used
+     */
+    DispatchPlan getDispatchPlan(List<Binding> bindings) {
+        DispatchPlan plan = dispatchPlans.get(bindings);
+        if (plan == null) {
+            plan = new DispatchPlan(this, bindings);
+            DispatchPlan existing = dispatchPlans.putIfAbsent(plan.getBindings(), plan);
+            if (existing != null) plan = existing;
+        }
+        return plan;
+    }
+
+    /**
+     * @return the invoker for the given method, created only once per mixin class
+     */
+    MethodInvoker getInvoker(Method method) {
+        MethodInvoker invoker = invokers.get(method);
+        if (invoker == null) {
+            invoker = MethodInvoker.of(method);
+            MethodInvoker existing = invokers.putIfAbsent(method, invoker);
+            if (existing != null) invoker = existing;
+        }
+        return invoker;
+    }
+
+    /**
+     * @return a provider of new instances of the given class, or of a single
+     *         one, shared by all instances of this class, if it is {@link Stateless}
+     */
+    <I> InstanceProvider<I> getClassProvider(Class<I> implClass) {
+        InstanceProvider<?> provider = classProviders.get(implClass);
+        if (provider == null) {
+            boolean stateless = implClass.isAnnotationPresent(Stateless.class);
+            Preconditions.checkArgument(!stateless || !Mixin.Impl.class.isAssignableFrom(implClass), "%s extends Mixin.Impl, so it cannot be stateless", implClass);
+            provider = stateless ? InstanceProviders.memoize(InstanceProviders.ofClass(implClass)) : InstanceProviders.ofClass(implClass);
+            InstanceProvider<?> existing = classProviders.putIfAbsent(implClass, provider);
+            if (existing != null) provider = existing;
+        }
+        return unsafeCast(provider);
+    }
+
+    /**
+     * @param providers the instance providers, in the same order as their dispatch plan slots
+     */
+    T newInstance(DispatchPlan plan, InstanceProvider<?>[] providers) {
+        if (lazy) return newLazyInstance(plan, providers);
+
+        Object[] impls = new Object[plan.size()];
+        provide(providers, impls);
+        return newInstance(plan, impls);
+    }
+
+    /**
+     * Stores the implementation of each provider in the slot with the same
+     * index, concurrently if this class has a provider executor. The last
+     * provider, and {@link ThreadBoundInstanceProvider}s, run on the calling
+     * thread, and waiting for the others compensates fork join pools, so it
+     * cannot starve the pool it runs on. Providers run in the
+     * {@link InstanceScope} of the calling thread.
+     *
+     * @throws IncompleteImplementationException if some provider fails while running concurrently
+     */
+    void provide(InstanceProvider<?>[] providers, Object[] impls) {
+        if (providerExecutor == null || providers.length < 2) {
+            for (int i = 0; i < providers.length; i++) {
+                impls[i] = providers[i].provide();
+            }
+            return;
+        }
+
+        final InstanceScope scope = InstanceScope.current();
+        int last = providers.length - 1;
+        List<CompletableFuture<Object>> futures = Lists.newArrayList(Collections.<CompletableFuture<Object>>nCopies(providers.length, null));
+        for (int i = 0; i < last; i++) {
+            final InstanceProvider<?> provider = providers[i];
+            if (provider instanceof ThreadBoundInstanceProvider) continue;
+
+            Supplier<Object> supplier = new Supplier<Object>() {
+                @Override
+                public Object get() {
+                    return provideInScope(provider, scope);
+                }
+            };
+            try {
+                futures.set(i, CompletableFuture.supplyAsync(supplier, providerExecutor));
+            } catch (RejectedExecutionException e) {
+                // the calling thread provides it instead
+                futures.set(i, provideNow(supplier));
+            }
+        }
+        for (int i = 0; i <= last; i++) {
+            if (futures.get(i) != null) continue;
+
+            final InstanceProvider<?> provider = providers[i];
+            futures.set(i, provideNow(new Supplier<Object>() {
+                @Override
+                public Object get() {
+                    return provider.provide();
+                }
+            }));
+        }
+
+        List<Throwable> failures = Lists.newArrayList();
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                // unlike Future.get, it lets fork join pools add a thread while blocked
+                impls[i] = futures.get(i).join();
+            } catch (CompletionException e) {
+                failures.add(e.getCause());
+            }
+        }
+        if (!failures.isEmpty()) {
+            IncompleteImplementationException exception = new IncompleteImplementationException(format("%d instance providers failed", failures.size()), failures.get(0));
+            for (Throwable failure : failures.subList(1, failures.size())) {
+                exception.addSuppressed(failure);
+            }
+            throw exception;
+        }
+    }
+
+    private static Object provideInScope(InstanceProvider<?> provider, InstanceScope scope) {
+        if (scope == null || InstanceScope.current() == scope) return provider.provide();
+        InstanceScope.Entry entry = scope.enter();
+        try {
+            return provider.provide();
+        } finally {
+            entry.close();
+        }
+    }
+
+    private static CompletableFuture<Object> provideNow(Supplier<Object> supplier) {
+        CompletableFuture<Object> future = new CompletableFuture<Object>();
+        try {
+            future.complete(supplier.get());
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Creates several instances of the same dispatch plan. Generated instances
+     * copy their implementations into their fields, so unless they are
+     * intercepted, they all share the same implementations array.
+     */
+    List<T> newInstances(DispatchPlan plan, InstanceProvider<?>[] providers, int count) {
+        Preconditions.checkArgument(count >= 0, "count cannot be negative");
+        List<T> instances = Lists.newArrayListWithCapacity(count);
+        if (lazy || engine == MixinEngine.PROXY || plan.hasInterceptors()) {
+            for (int i = 0; i < count; i++) {
+                instances.add(newInstance(plan, providers));
+            }
+        } else {
+            Object[] impls = new Object[plan.size()];
+            for (int i = 0; i < count; i++) {
+                provide(providers, impls);
+                instances.add(newInstance(plan, impls));
+            }
+        }
+        return instances;
+    }
+
+    T newInstance(DispatchPlan plan, Object[] impls) {
+        return newInstance(plan, impls, generatedClass);
+    }
+
+    /**
+     * Creates an instance that can be rebound when pooled. Generated instances
+     * use a class whose implementation fields are not final, if it can be
+     * generated.
+     */
+    T newPooledInstance(DispatchPlan plan, Object[] impls) {
+        return newInstance(plan, impls, engine == MixinEngine.GENERATED ? getPooledClass() : null);
+    }
+
+    private GeneratedMixinClass<T> getPooledClass() {
+        GeneratedMixinClass<T> pooled = pooledClass;
+        if (pooled == null) {
+            synchronized (this) {
+                pooled = pooledClass;
+                if (pooled == null) {
+                    ClassLoader loader = intfs.iterator().next().getClassLoader();
+                    // precompiled classes of non public interfaces have no rebindable counterpart
+                    pooled = !lazy && GeneratedMixinClass.canGenerate(loader, allIntfs) ?
+                            GeneratedMixinClass.<T>generate(loader, intfs, false, true, listener) :
+                            generatedClass;
+                    pooledClass = pooled;
+                }
+            }
+        }
+        return pooled;
+    }
+
+    private T newInstance(DispatchPlan plan, Object[] impls, GeneratedMixinClass<T> generated) {
+        ObjectImplementation objectImpl = plan.initObjectImplementation(impls);
+
+        T instance = engine == MixinEngine.GENERATED ?
+                generated.newInstance(plan, impls) :
+                newProxyInvocationHandler(plan, impls, null).getProxy();
+
+        objectImpl.setMixin(instance);
+        plan.initImplementationsProxy(impls, instance);
+        return instance;
+    }
+
+    /**
+     * @return the object implementation of a mixin instance of this class
+     */
+    ObjectImplementation getObjectImplementation(T instance) {
+        if (engine == MixinEngine.GENERATED) {
+            GeneratedMixinClass<T> pooled = pooledClass;
+            return pooled != null && pooled.isInstance(instance) ? pooled.getObjectImplementation(instance) : generatedClass.getObjectImplementation(instance);
+        }
+        Preconditions.checkArgument(instance != null && instance.getClass() == proxyConst.getDeclaringClass(), "%s is not an instance of this mixin class", instance);
+        InvocationHandler handler = Proxy.getInvocationHandler(instance);
+        Preconditions.checkArgument(handler instanceof ProxyInvocationHandler, "%s is not an instance of this mixin class", instance);
+        Object[] impls = ((ProxyInvocationHandler<?>) handler).getImplementations();
+        return (ObjectImplementation) impls[impls.length - 1];
+    }
+
+    /**
+     * @return true if the implementations of a pooled instance can be replaced
+     */
+    boolean isRebindable(T instance) {
+        if (engine == MixinEngine.PROXY) return true;
+        GeneratedMixinClass<T> pooled = pooledClass;
+        return pooled != null && pooled.isRebindable() && pooled.isInstance(instance);
+    }
+
+    /**
+     * Makes an instance use the implementations of the slots that were replaced.
+     *
+     * @param impls the implementations array the instance was created with
+     * @param rebound whether each slot of {@code impls} holds a new implementation
+     */
+    void rebind(DispatchPlan plan, T instance, Object[] impls, boolean[] rebound) {
+        if (engine == MixinEngine.GENERATED) {
+            Preconditions.checkArgument(isRebindable(instance), "%s cannot be rebound", instance);
+            pooledClass.rebind(instance, plan, impls, rebound);
+        } else {
+            // proxy instances dispatch through the impls array, only wrapped handlers need to be resolved again
+            ((ProxyInvocationHandler<?>) Proxy.getInvocationHandler(instance)).resolveHandlers();
+        }
+        plan.rebindObjectImplementation(impls);
+        plan.initImplementationsProxy(impls, instance);
+    }
+
+    private T newLazyInstance(DispatchPlan plan, InstanceProvider<?>[] providers) {
+        LazyImplementations lazyImpls = new LazyImplementations(plan, providers);
+
+        // equals, hashCode and toString are needed right away by the object implementation
+        Object[] impls = new Object[plan.size()];
+        int delegateSlot = plan.getObjectDelegateSlot();
+        if (delegateSlot >= 0) impls[delegateSlot] = lazyImpls.get(delegateSlot);
+        ObjectImplementation objectImpl = plan.initObjectImplementation(impls);
+
+        T instance = engine == MixinEngine.GENERATED ?
+                generatedClass.newLazyInstance(objectImpl, lazyImpls) :
+                newProxyInvocationHandler(plan, impls, lazyImpls).getProxy();
+
+        objectImpl.setMixin(instance);
+        lazyImpls.setMixin(instance);
+        return instance;
+    }
+
+    private ProxyInvocationHandler<T> newProxyInvocationHandler(DispatchPlan plan, Object[] impls, LazyImplementations lazyImpls) {
+        return listener == null ?
+                new ProxyInvocationHandler<T>(this, plan, impls, lazyImpls) :
+                new RecordingProxyInvocationHandler<T>(this, plan, impls, lazyImpls);
+    }
+
+    static <T> Constructor<T> getProxyConstructor(ClassLoader loader, Set<Class<?>> intfs) {
+        try {
+            Class<Class<?>> classClazz = Casts.unsafeCast(Class.class);
+            Class<?>[] intfsArray = Iterables.toArray(intfs, classClazz);
+            Constructor<T> constructor = unsafeCast(Proxy.getProxyClass(loader, intfsArray).getConstructor(InvocationHandler.class));
+            // proxy classes for non-public interfaces are not public either
+            constructor.setAccessible(true);
+            return constructor;
+        } catch (SecurityException e) {
+            throw propagate(e);
+        } catch (IllegalArgumentException e) {
+            throw propagate(e);
+        } catch (NoSuchMethodException e) {
+            throw propagate(e);
+        }
+    }
+
 }
@@ -0,0 +1,138 @@
+package platypus.internal;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import platypus.MixinEngine;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Canonical mixin classes, so that their proxy or generated classes, invokers
+ * and dispatch plans are only computed once.
+ *
+ * <p>
+ * Mixin classes are registered using a {@link ClassValue} of the class with
+ * the most specific class loader among their interfaces and platypus itself,
+ * so they are collected along with it when its
+ * class loader is discarded. Every other class they reference is visible from
+ * that class loader, so they cannot keep a child class loader alive: for
+ * instance, a mixin class of {@link Runnable} is registered in platypus, not
+ * in a JDK class. Mixin classes whose classes come from unrelated class
+ * loaders are not registered at all. Registered mixin classes live as long
+ * as that class loader, so the only provider executor they can have is the
+ * common fork join pool, which lives forever anyway. Lookups don't lock.
+ * </p>
+ *
+ * @author rui.figueira@gmail.com (Rui Figueira)
+ */
+public final class MixinClassRegistry {
+
+    private static final class Key {
+
+        private final List<Class<?>> intfs;
+        private final MixinEngine engine;
+        private final boolean lazy;
+        private final boolean cacheHashCode;
+        private final boolean parallelProviders;
+
+        Key(List<Class<?>> intfs, MixinEngine engine, boolean lazy, boolean cacheHashCode, boolean parallelProviders) {
+            this.intfs = intfs;
+            this.engine = engine;
+            this.lazy = lazy;
+            this.cacheHashCode = cacheHashCode;
+            this.parallelProviders = parallelProviders;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(intfs, engine, lazy, cacheHashCode, parallelProviders);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) return false;
+            Key other = (Key) obj;
+            return engine == other.engine && lazy == other.lazy && cacheHashCode == other.cacheHashCode && parallelProviders == other.parallelProviders && intfs.equals(other.intfs);
+        }
+    }
+
+    private static final ClassValue<ConcurrentMap<Key, MixinClassImpl<?>>> MIXIN_CLASSES = new ClassValue<ConcurrentMap<Key, MixinClassImpl<?>>>() {
+        @Override
+        protected ConcurrentMap<Key, MixinClassImpl<?>> computeValue(Class<?> intf) {
+            return Maps.newConcurrentMap();
+        }
+    };
+
+    private MixinClassRegistry() {
+    }
+
+    /**
+     * @return the mixin class for the given interfaces, in the same order,
+     *         creating it only the first time it is requested
+     */
+    public static <T> MixinClassImpl<T> get(MixinEngine engine, boolean lazy, Class<?> intf, Collection<Class<?>> others) {
+        return get(engine, lazy, false, false, intf, others);
+    }
+
+    /**
+     * @param parallelProviders if true, instance providers run concurrently
+     *        on the common fork join pool
+     * @return the mixin class for the given interfaces, in the same order,
+     *         creating it only the first time it is requested
+     */
+    public static <T> MixinClassImpl<T> get(MixinEngine engine, boolean lazy, boolean cacheHashCode, boolean parallelProviders, Class<?> intf, Collection<Class<?>> others) {
+        Executor providerExecutor = parallelProviders ? ForkJoinPool.commonPool() : null;
+        List<Class<?>> intfs = ImmutableList.copyOf(Sets.newLinkedHashSet(Iterables.concat(Collections.<Class<?>>singleton(intf), others)));
+        Class<?> owner = getOwner(intfs);
+        if (owner == null) return new MixinClassImpl<T>(engine, lazy, cacheHashCode, providerExecutor, null, intf, others);
+
+        ConcurrentMap<Key, MixinClassImpl<?>> mixinClasses = MIXIN_CLASSES.get(owner);
+        Key key = new Key(intfs, engine, lazy, cacheHashCode, parallelProviders);
+
+        MixinClassImpl<?> mixinClass = mixinClasses.get(key);
+        if (mixinClass == null) {
+            mixinClass = new MixinClassImpl<T>(engine, lazy, cacheHashCode, providerExecutor, null, intf, others);
+            MixinClassImpl<?> existing = mixinClasses.putIfAbsent(key, mixinClass);
+            if (existing != null) mixinClass = existing;
+        }
+        return Casts.unsafeCast(mixinClass);
+    }
+
+    /**
+     * @return the class whose class loader sees all the classes a mixin class
+     *         references, or null if there is no such class
+     */
+    private static Class<?> getOwner(List<Class<?>> intfs) {
+        List<Class<?>> classes = Lists.newArrayList(intfs);
+        classes.add(MixinClassImpl.class);
+
+        Class<?> owner = classes.get(0);
+        for (Class<?> cls : classes) {
+            if (isAncestor(cls.getClassLoader(), owner.getClassLoader())) continue;
+            if (!isAncestor(owner.getClassLoader(), cls.getClassLoader())) return null;
+            owner = cls;
+        }
+        return owner;
+    }
+
+    /**
+     * @return true if loader is the same as, or an ancestor of, descendant
+     */
+    private static boolean isAncestor(ClassLoader loader, ClassLoader descendant) {
+        if (loader == null) return true;
+        for (ClassLoader current = descendant; current != null; current = current.getParent()) {
+            if (current == loader) return true;
+        }
+        return false;
+    }
+}
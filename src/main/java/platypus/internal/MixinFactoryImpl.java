@@ -0,0 +1,44 @@
+package platypus.internal;
+
+import java.util.List;
+
+import platypus.InstanceProvider;
+import platypus.MixinClass;
+import platypus.MixinFactory;
+import platypus.MixinPool;
+
+import com.google.common.base.Preconditions;
+
+public class MixinFactoryImpl<T> implements MixinFactory<T> {
+
+    private final MixinClassImpl<T> mixinClass;
+    private final DispatchPlan plan;
+    private final InstanceProvider<?>[] providers;
+
+    public MixinFactoryImpl(MixinClassImpl<T> mixinClass, MixinImplementorImpl<T> implementor) {
+        this.mixinClass = mixinClass;
+        this.plan = implementor.getDispatchPlan();
+        this.providers = implementor.getProviders();
+    }
+
+    @Override
+    public MixinClass<T> getMixinClass() {
+        return mixinClass;
+    }
+
+    @Override
+    public T newInstance() {
+        return mixinClass.newInstance(plan, providers);
+    }
+
+    @Override
+    public List<T> newInstances(int count) {
+        return mixinClass.newInstances(plan, providers, count);
+    }
+
+    @Override
+    public MixinPool<T> pooled(int maxPooledPerThread) {
+        Preconditions.checkState(!mixinClass.lazy, "Lazy mixin classes cannot be pooled");
+        return new MixinPoolImpl<T>(mixinClass, plan, providers, maxPooledPerThread);
+    }
+}
@@ -0,0 +1,212 @@
+package platypus.internal;
+
+import java.lang.reflect.InvocationHandler;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import platypus.InstanceProvider;
+import platypus.InstanceProviders;
+import platypus.MixinImplementor;
+import platypus.MixinInitializer;
+import platypus.MixinInterceptor;
+import platypus.internal.DispatchPlan.Binding;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+/**
+ * Collects the implementations declared by a {@link MixinInitializer}.
+ *
+ * @author rui.figueira@gmail.com (Rui Figueira)
+ */
+public class MixinImplementorImpl<T> implements MixinImplementor {
+
+    private class ImplementationImpl<I> implements Implementation<I> {
+
+        protected final Collection<Class<?>> intfs;
+
+        public ImplementationImpl(Class<I> intf) {
+            this.intfs = Casts.unsafeCast(Collections.singleton(intf));
+        }
+
+        public ImplementationImpl(Collection<Class<?>> intfs) {
+            this.intfs = intfs;
+        }
+
+        protected Binding binding() {
+            return Binding.implement(intfs);
+        }
+
+        @Override
+        public MixinImplementor with(I obj) {
+            return with(InstanceProviders.ofInstance(obj));
+        }
+
+        @Override
+        public MixinImplementor with(InvocationHandler handler) {
+            // handlers are called directly, there's no need to adapt them into proxies
+            return add(binding().withHandler(), InstanceProviders.ofInstance(handler));
+        }
+
+        @Override
+        public MixinImplementor with(InstanceProvider<? extends I> provider) {
+            return add(binding(), provider);
+        }
+
+        @Override
+        public MixinImplementor withClass(Class<? extends I> implClass) {
+            return add(binding(), mixinClass.getClassProvider(implClass));
+        }
+
+        @Override
+        public MixinImplementor asyncWith(I obj, Executor executor) {
+            return asyncWith(InstanceProviders.ofInstance(obj), executor);
+        }
+
+        @Override
+        public MixinImplementor asyncWith(final InstanceProvider<? extends I> provider, final Executor executor) {
+            Preconditions.checkNotNull(executor);
+            if (provider instanceof ThreadBoundInstanceProvider) {
+                return add(binding().withHandler(), new ThreadBoundInstanceProvider<InvocationHandler>() {
+                    @Override
+                    public InvocationHandler provide() {
+                        return new AsyncInvocationHandler(mixinClass, provider.provide(), executor);
+                    }
+                });
+            }
+            return add(binding().withHandler(), new InstanceProvider<InvocationHandler>() {
+                @Override
+                public InvocationHandler provide() {
+                    return new AsyncInvocationHandler(mixinClass, provider.provide(), executor);
+                }
+            });
+        }
+    }
+
+    private class OverrideImplementationImpl<I> extends ImplementationImpl<I> {
+
+        public OverrideImplementationImpl(Class<I> intf) {
+            super(intf);
+        }
+
+        public OverrideImplementationImpl(Collection<Class<?>> intfs) {
+            super(intfs);
+        }
+
+        @Override
+        protected Binding binding() {
+            return Binding.override(intfs);
+        }
+    }
+
+    private class RemainersImplementationImpl extends ImplementationImpl<Object> {
+
+        public RemainersImplementationImpl() {
+            super(Collections.<Class<?>>emptySet());
+        }
+
+        @Override
+        protected Binding binding() {
+            return Binding.implementRemainers();
+        }
+    }
+
+    private class InterceptionImpl implements Interception {
+
+        private final Collection<Class<?>> intfs;
+
+        public InterceptionImpl(Collection<Class<?>> intfs) {
+            this.intfs = intfs;
+        }
+
+        @Override
+        public MixinImplementor with(MixinInterceptor interceptor) {
+            return with(InstanceProviders.ofInstance(interceptor));
+        }
+
+        @Override
+        public MixinImplementor with(InstanceProvider<? extends MixinInterceptor> provider) {
+            return add(Binding.intercept(intfs), provider);
+        }
+    }
+
+    private final MixinClassImpl<T> mixinClass;
+    private final List<Binding> bindings = Lists.newArrayList();
+    private final List<InstanceProvider<?>> providers = Lists.newArrayList();
+
+    public MixinImplementorImpl(MixinClassImpl<T> mixinClass, MixinInitializer initializer) {
+        this.mixinClass = mixinClass;
+
+        // this will add all the necessary providers
+        initializer.initialize(this);
+    }
+
+    /**
+     * @return the dispatch plan for the declared implementations, shared by
+     *         all initializers that declare the same implementations
+     */
+    public DispatchPlan getDispatchPlan() {
+        return mixinClass.getDispatchPlan(bindings);
+    }
+
+    /**
+     * @return the instance providers, in the same order as their dispatch plan slots
+     */
+    public InstanceProvider<?>[] getProviders() {
+        return providers.toArray(new InstanceProvider<?>[providers.size()]);
+    }
+
+    @Override
+    public <I> Implementation<I> implement(Class<I> clazz) {
+        return new ImplementationImpl<I>(clazz);
+    }
+
+    @Override
+    public Implementation<Object> implement(Class<?>... clazz) {
+        return implement(Arrays.asList(clazz));
+    }
+
+    @Override
+    public Implementation<Object> implement(Collection<Class<?>> clazzes) {
+        return new ImplementationImpl<Object>(clazzes);
+    }
+
+    @Override
+    public Implementation<Object> implementRemainers() {
+        return new RemainersImplementationImpl();
+    }
+
+    @Override
+    public <I> Implementation<I> override(Class<I> clazz) {
+        return new OverrideImplementationImpl<I>(clazz);
+    }
+
+    @Override
+    public Implementation<Object> override(Class<?>... clazz) {
+        return override(Arrays.asList(clazz));
+    }
+
+    @Override
+    public Implementation<Object> override(Collection<Class<?>> clazzes) {
+        return new OverrideImplementationImpl<Object>(clazzes);
+    }
+
+    @Override
+    public Interception intercept(Class<?>... clazz) {
+        return intercept(Arrays.asList(clazz));
+    }
+
+    @Override
+    public Interception intercept(Collection<Class<?>> clazzes) {
+        return new InterceptionImpl(clazzes);
+    }
+
+    private MixinImplementor add(Binding binding, InstanceProvider<?> provider) {
+        bindings.add(binding);
+        providers.add(provider);
+        return this;
+    }
+}
@@ -0,0 +1,155 @@
+package platypus.internal;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+import platypus.InstanceProvider;
+import platypus.Mixin;
+import platypus.MixinClass;
+import platypus.MixinPool;
+import platypus.Resettable;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+/**
+ * Keeps released mixin instances in a bounded stack per thread, so that
+ * acquiring and releasing instances needs no synchronization.
+ *
+ * <p>
+ * Pooled instances keep their implementations array. When released, their
+ * {@link Resettable} implementations are reset, and the others are removed so
+ * that they get replaced by new ones when the instance is acquired again.
+ * Generated instances keep their implementations in final fields, so pooled
+ * ones are created from a generated class whose fields are not final.
+ * </p>
+ *
+ * @author rui.figueira@gmail.com (Rui Figueira)
+ */
+public class MixinPoolImpl<T> implements MixinPool<T> {
+
+    /**
+     * Pool information of a mixin instance, kept by its {@link ObjectImplementation}.
+     */
+    static final class PoolEntry {
+
+        final MixinPoolImpl<?> pool;
+        final Object[] impls;
+        boolean released;
+
+        PoolEntry(MixinPoolImpl<?> pool, Object[] impls) {
+            this.pool = pool;
+            this.impls = impls;
+        }
+    }
+
+    private final MixinClassImpl<T> mixinClass;
+    private final DispatchPlan plan;
+    private final InstanceProvider<?>[] providers;
+    private final int maxPooledPerThread;
+    private final ThreadLocal<Deque<T>> released = new ThreadLocal<Deque<T>>() {
+        @Override
+        protected Deque<T> initialValue() {
+            return new ArrayDeque<T>();
+        }
+    };
+
+    public MixinPoolImpl(MixinClassImpl<T> mixinClass, DispatchPlan plan, InstanceProvider<?>[] providers, int maxPooledPerThread) {
+        Preconditions.checkArgument(maxPooledPerThread > 0, "maxPooledPerThread must be positive");
+        this.mixinClass = mixinClass;
+        this.plan = plan;
+        this.providers = providers;
+        this.maxPooledPerThread = maxPooledPerThread;
+    }
+
+    @Override
+    public MixinClass<T> getMixinClass() {
+        return mixinClass;
+    }
+
+    @Override
+    public T newInstance() {
+        T instance = released.get().pollFirst();
+        if (instance == null) {
+            Object[] impls = new Object[plan.size()];
+            mixinClass.provide(providers, impls);
+            instance = mixinClass.newPooledInstance(plan, impls);
+            plan.getObjectImplementation(impls).setPoolEntry(new PoolEntry(this, impls));
+            return instance;
+        }
+
+        PoolEntry entry = mixinClass.getObjectImplementation(instance).getPoolEntry();
+        Object[] impls = entry.impls;
+        boolean[] rebound = null;
+        for (int i = 0; i < providers.length; i++) {
+            if (impls[i] == null) {
+                if (rebound == null) rebound = new boolean[impls.length];
+                impls[i] = providers[i].provide();
+                rebound[i] = true;
+            }
+        }
+        if (rebound != null) {
+            mixinClass.rebind(plan, instance, impls, rebound);
+        }
+        entry.released = false;
+        return instance;
+    }
+
+    @Override
+    public List<T> newInstances(int count) {
+        Preconditions.checkArgument(count >= 0, "count cannot be negative");
+        List<T> instances = Lists.newArrayListWithCapacity(count);
+        for (int i = 0; i < count; i++) {
+            instances.add(newInstance());
+        }
+        return instances;
+    }
+
+    @Override
+    public MixinPool<T> pooled(int maxPooledPerThread) {
+        return new MixinPoolImpl<T>(mixinClass, plan, providers, maxPooledPerThread);
+    }
+
+    @Override
+    public void release(T instance) {
+        PoolEntry entry = mixinClass.getObjectImplementation(instance).getPoolEntry();
+        Preconditions.checkArgument(entry != null && entry.pool == this, "%s was not created by this pool", instance);
+        Preconditions.checkState(!entry.released, "%s was already released", instance);
+
+        entry.released = true;
+        Object[] impls = entry.impls;
+        boolean discarded = false;
+        for (int i = 0; i < providers.length; i++) {
+            Object impl = impls[i];
+            if (impl == null || indexOf(impls, i, impl) >= 0) continue;
+
+            if (impl instanceof Resettable) {
+                ((Resettable) impl).reset();
+            } else {
+                if (impl instanceof Mixin.Impl) {
+                    ((Mixin.Impl) impl).resetProxy();
+                }
+                discard(impls, impl, i);
+                discarded = true;
+            }
+        }
+
+        // instances released beyond capacity, or that cannot get new implementations, are left to the garbage collector
+        Deque<T> stack = released.get();
+        if (stack.size() < maxPooledPerThread && (!discarded || mixinClass.isRebindable(instance))) stack.addFirst(instance);
+    }
+
+    private static int indexOf(Object[] impls, int end, Object impl) {
+        for (int i = 0; i < end; i++) {
+            if (impls[i] == impl) return i;
+        }
+        return -1;
+    }
+
+    private static void discard(Object[] impls, Object impl, int start) {
+        for (int i = start; i < impls.length; i++) {
+            if (impls[i] == impl) impls[i] = null;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package platypus.internal;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.UndeclaredThrowableException;
+
+/**
+ * Provide an implementation for Object methods.
+ *
+ * <p>
+ * This object is always used as the implementation of Object methods but
+ * also delegates to any explicitly specified implementation. It basically
+ * ensures that a mixin instance is equal to itself before doing any
+ * delegation.
+ * </p>
+ *
+ * <p>
+ * When the delegate is an {@link InvocationHandler} bound to {@code Object},
+ * it is called directly with the mixin instance as its proxy.
+ * </p>
+ *
+ * @author m4ktub
+ */
+class ObjectImplementation {
+
+    private static final Method EQUALS;
+    private static final Method HASH_CODE;
+    private static final Method TO_STRING;
+    static {
+        try {
+            EQUALS = Object.class.getMethod("equals", Object.class);
+            HASH_CODE = Object.class.getMethod("hashCode");
+            TO_STRING = Object.class.getMethod("toString");
+        } catch (NoSuchMethodException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final boolean cacheHashCode;
+    private Object delegate;
+    private InvocationHandler handler;
+    private Object mixin;
+    private MixinPoolImpl.PoolEntry poolEntry;
+    // 0 if not computed yet, like String does
+    private int hash;
+
+    public ObjectImplementation(Object delegate) {
+        this(delegate, false);
+    }
+
+    /**
+     * @param cacheHashCode if true, the delegate hash code is only computed once
+     */
+    public ObjectImplementation(Object delegate, boolean cacheHashCode) {
+        super();
+
+        this.delegate = delegate;
+        this.cacheHashCode = cacheHashCode;
+    }
+
+    void setMixin(Object mixin) {
+        this.mixin = mixin;
+    }
+
+    void setDelegate(Object delegate) {
+        this.delegate = delegate;
+        this.handler = null;
+        this.hash = 0;
+    }
+
+    /**
+     * Delegates to an invocation handler, called with the mixin instance as its proxy.
+     */
+    void setHandler(InvocationHandler handler) {
+        this.delegate = handler;
+        this.handler = handler;
+        this.hash = 0;
+    }
+
+    /**
+     * @return the pool information of the mixin instance, or null if it was not created by a pool
+     */
+    MixinPoolImpl.PoolEntry getPoolEntry() {
+        return poolEntry;
+    }
+
+    void setPoolEntry(MixinPoolImpl.PoolEntry poolEntry) {
+        this.poolEntry = poolEntry;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == mixin) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+
+        if (obj instanceof GeneratedMixin || Proxy.isProxyClass(obj.getClass())) {
+            // it's another mixin
+            return false;
+        } else {
+            if (handler != null) return (Boolean) invokeHandler(EQUALS, obj);
+            return delegate != null && delegate.equals(obj);
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        if (!cacheHashCode) {
+            return delegateHashCode();
+        }
+        int h = hash;
+        if (h == 0) {
+            h = delegateHashCode();
+            hash = h;
+        }
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        if (handler != null) return (String) invokeHandler(TO_STRING);
+        return delegate != null ? delegate.toString() : super.toString();
+    }
+
+    private int delegateHashCode() {
+        if (handler != null) return (Integer) invokeHandler(HASH_CODE);
+        return delegate != null ? delegate.hashCode() : super.hashCode();
+    }
+
+    /**
+     * Calls the handler like a proxy would, so checked exceptions are undeclared.
+     */
+    private Object invokeHandler(Method method, Object ... args) {
+        try {
+            return handler.invoke(mixin, method, args.length == 0 ? null : args);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new UndeclaredThrowableException(e);
+        }
+    }
+
+}
@@ -1,276 +1,132 @@
 package platypus.internal;
 
 import static com.google.common.base.Throwables.propagate;
-import static com.google.common.collect.FluentIterable.from;
 import static java.lang.String.format;
 
 import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
-import java.util.Arrays;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Set;
-
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import platypus.IncompleteImplementationException;
-import platypus.InstanceProvider;
-import platypus.InstanceProviders;
-import platypus.Mixin;
-import platypus.MixinImplementor;
-import platypus.MixinInitializer;
-
-import com.google.common.base.Function;
-import com.google.common.base.Joiner;
-import com.google.common.base.Preconditions;
-import com.google.common.base.Predicate;
-import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
-
-public class ProxyInvocationHandler<T> implements InvocationHandler, MixinImplementor {
-
-    static final Logger LOGGER = LoggerFactory.getLogger(ProxyInvocationHandler.class);
-
-    static final Predicate<Class<?>> WITH_DECLARED_METHODS_FN = new Predicate<Class<?>>() {
-
-        @Override
-        public boolean apply(Class<?> clazz) {
-            return clazz.getDeclaredMethods().length > 0;
-        }
-    };
-
-    static final Function<Class<?>, Iterable<Class<?>>> ALL_INTFS_FN = new Function<Class<?>, Iterable<Class<?>>>() {
-        @Override
-        public Iterable<Class<?>> apply(Class<?> clazz) {
-            return Classes.getInterfacesClosure(clazz);
-        }
-    };
-
-    static final Function<InterfacesInstanceProvider, Iterable<Class<?>>> PROVIDER_IMPLEMENTED_INTFS_FN = new Function<InterfacesInstanceProvider, Iterable<Class<?>>>() {
-        @Override
-        public Iterable<Class<?>> apply(InterfacesInstanceProvider provider) {
-            return provider.getImplementedInterfaces();
-        }
-    };
-
-    private static class InterfacesInstanceProvider {
-
-        private final InstanceProvider<?> provider;
-        private final Set<Class<?>> intfs;
-        private final boolean overrides;
-
-        public InterfacesInstanceProvider(InstanceProvider<?> provider, Collection<Class<?>> intfs) {
-            this(provider, intfs, false);
-        }
-
-        public InterfacesInstanceProvider(InstanceProvider<?> provider, Collection<Class<?>> intfs, boolean overrides) {
-            this.provider = provider;
-            this.intfs = ImmutableSet.copyOf(intfs);
-            this.overrides = overrides;
-        }
+import platypus.internal.DispatchPlan.MethodDispatch;
 
-        public Object provide() {
-            return provider.provide();
-        }
+public class ProxyInvocationHandler<T> implements InvocationHandler {
 
-        public Set<Class<?>> getImplementedInterfaces() {
-            return intfs;
-        }
+    private final DispatchPlan plan;
+    private final Object[] impls;
+    // null unless some implementation is a handler or a proxy, which is rare
+    private InvocationHandler[] handlers;
+    private final LazyImplementations lazyImpls;
+    private final T proxy;
 
-        public boolean overrides() {
-            return overrides;
-        }
+    public ProxyInvocationHandler(MixinClassImpl<T> mixinClass, DispatchPlan plan, Object[] impls) {
+        this(mixinClass, plan, impls, null);
     }
 
-    private class ImplementationImpl<I> implements Implementation<I> {
-
-        protected final Collection<Class<?>> intfs;
-
-        public ImplementationImpl(Class<I> intf) {
-            this.intfs = Casts.unsafeCast(Collections.singleton(intf));
-        }
-
-        public ImplementationImpl(Collection<Class<?>> intfs) {
-            this.intfs = intfs;
-        }
-
-        @Override
-        public MixinImplementor with(I obj) {
-            return with(InstanceProviders.ofInstance(obj));
-        }
-
-        @Override
-        public MixinImplementor with(InvocationHandler handler) {
-            return with(InstanceProviders.<I>adapt(handler, intfs));
-        }
-
-        @Override
-        public MixinImplementor with(InstanceProvider<? extends I> provider) {
-            providers.add(new InterfacesInstanceProvider(provider, intfs));
-            return ProxyInvocationHandler.this;
-        }
+    /**
+     * @param lazyImpls if not null, provides implementations missing from impls
+     */
+    public ProxyInvocationHandler(MixinClassImpl<T> mixinClass, DispatchPlan plan, Object[] impls, LazyImplementations lazyImpls) {
+        this.plan = plan;
+        this.impls = impls;
+        this.lazyImpls = lazyImpls;
+        resolveHandlers();
+        this.proxy = newProxyInstance(mixinClass);
     }
 
-    private class OverrideImplementationImpl<I> extends ImplementationImpl<I> {
-
-        public OverrideImplementationImpl(Class<I> intf) {
-            super(intf);
-        }
-
-        public OverrideImplementationImpl(Collection<Class<?>> intfs) {
-            super(intfs);
-        }
-
-        @Override
-        public MixinImplementor with(InstanceProvider<? extends I> provider) {
-            providers.add(new InterfacesInstanceProvider(provider, intfs, true));
-            return ProxyInvocationHandler.this;
-        }
+    public T getProxy() {
+        return proxy;
     }
 
     /**
-     * Provide an implementation for Object methods.
-     * 
-     * <p>
-     * This object is always used as the implementation of Object methods but
-     * also delegates to any explicitly specified implementation. It basically
-     * ensures that a proxy instance is equal to itself before doing any
-     * delegation.
-     * </p>
-     * 
-     * @author m4ktub
+     * @return the implementations, one per dispatch plan slot
      */
-    private class ObjectImplementation {
-
-        private Object delegate;
-
-        public ObjectImplementation(Object delegate) {
-            super();
-
-            this.delegate = delegate;
-        }
-
-        @Override
-        public boolean equals(Object obj) {
-            if (obj == null) {
-                return false;
-            }
-
-            if (Proxy.isProxyClass(obj.getClass())) {
-                return Proxy.getInvocationHandler(obj).equals(ProxyInvocationHandler.this);
-            } else {
-                return delegate != null && delegate.equals(obj);
-            }
-        }
-
-        @Override
-        public int hashCode() {
-            return delegate != null ? delegate.hashCode() : super.hashCode();
-        }
-
-        @Override
-        public String toString() {
-            return delegate != null ? delegate.toString() : super.toString();
-        }
-        
+    Object[] getImplementations() {
+        return impls;
     }
 
-    private final MixinClassImpl<T> mixinClass;
-    private final T proxy;
-    private final List<InterfacesInstanceProvider> providers = Lists.newArrayList();
-    private final LinkedHashMap<Class<?>, Object> impls = Maps.newLinkedHashMap();
-
-    public ProxyInvocationHandler(MixinClassImpl<T> mixinClass, MixinInitializer initializer) {
-        this.mixinClass = mixinClass;
-        this.proxy = newProxyInstance();
-
-        // this will add all the necessary providers
-        initializer.initialize(this);
-
-        Set<Class<?>> allMixinIntfs = getAllInterfaces(mixinClass);
-        checkCompleteImplementation(allMixinIntfs);
-
-        instanciateProviders(allMixinIntfs);
-        initImplementationsProxy();
-        ensureObjectImplementation();
-    }
-
-    private void initImplementationsProxy() {
-        Set<Object> identityImpls = Sets.newIdentityHashSet();
-        identityImpls.addAll(impls.values());
-
-        for (Mixin.Impl impl : from(identityImpls).filter(Mixin.Impl.class)) {
-            impl.setProxy(proxy);
+    /**
+     * Resolves the invocation handler of implementations that are proxies, so
+     * that they are called directly. Must be called again whenever
+     * implementations are replaced.
+     */
+    void resolveHandlers() {
+        InvocationHandler[] resolved = null;
+        for (int slot = 0; slot < impls.length; slot++) {
+            InvocationHandler handler = getHandler(slot, impls[slot]);
+            if (handler != null) {
+                if (resolved == null) resolved = new InvocationHandler[impls.length];
+                resolved[slot] = handler;
+            }
         }
+        handlers = resolved;
     }
 
-    @Override
-    public <I> Implementation<I> implement(Class<I> clazz) {
-        return new ImplementationImpl<I>(clazz);
+    DispatchPlan getDispatchPlan() {
+        return plan;
     }
 
-    @Override
-    public Implementation<Object> implement(Class<?>... clazz) {
-        return implement(Arrays.asList(clazz));
+    /**
+     * @return the implementation the given dispatch can call directly, or
+     *         null if the call must go through {@link #invoke(Object, Method, Object[])}
+     */
+    Object getDirectImplementation(MethodDispatch dispatch) {
+        if (dispatch == null || dispatch.getInterceptorSlots() != null) return null;
+        int slot = dispatch.getSlot();
+        return handlers == null || handlers[slot] == null ? impls[slot] : null;
     }
 
     @Override
-    public Implementation<Object> implement(Collection<Class<?>> clazzes) {
-        return new ImplementationImpl<Object>(clazzes);
-    }
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            // proxies only dispatch equals, hashCode and toString to Object, so they skip reflection
+            ObjectImplementation objectImpl = plan.getObjectImplementation(impls);
+            switch (method.getName()) {
+            case "equals":
+                return objectImpl.equals(args[0]);
+            case "hashCode":
+                return objectImpl.hashCode();
+            default:
+                return objectImpl.toString();
+            }
+        }
 
-    @Override
-    public Implementation<Object> implementRemainers() {
-        Set<Class<?>> remainers = getRemainers(getAllInterfaces(mixinClass));
-        return new ImplementationImpl<Object>(remainers);
-    }
+        MethodDispatch dispatch = plan.getDispatch(method);
+        if (dispatch == null) throw new IncompleteImplementationException(format("No implementation could be found for %s", method));
 
-    @Override
-    public <I> Implementation<I> override(Class<I> clazz) {
-        return new OverrideImplementationImpl<I>(clazz);
-    }
+        if (dispatch.getInterceptorSlots() != null) {
+            return new InterceptedInvocation(plan, dispatch, proxy, method, args, impls, lazyImpls).proceed();
+        }
 
-    @Override
-    public Implementation<Object> override(Class<?>... clazz) {
-        return override(Arrays.asList(clazz));
-    }
+        int slot = dispatch.getSlot();
+        InvocationHandler handler = handlers == null ? null : handlers[slot];
+        if (handler != null) {
+            // we call the wrapped handler directly but with our proxy object
+            return handler.invoke(proxy, method, args);
+        }
 
-    @Override
-    public Implementation<Object> override(Collection<Class<?>> clazzes) {
-        return new OverrideImplementationImpl<Object>(clazzes);
-    }
+        Object impl = impls[slot];
+        if (impl == null && lazyImpls != null) {
+            impl = lazyImpls.get(slot);
+            handler = getHandler(slot, impl);
+            if (handler != null) return handler.invoke(proxy, method, args);
+        }
+        if (impl == null) throw new IncompleteImplementationException(format("No implementation could be found for %s", method));
 
-    public T getProxy() {
-        return proxy;
+        return dispatch.getInvoker().invoke(impl, args);
     }
 
-    @Override
-    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-        Class<?> declaringClass = method.getDeclaringClass();
-        Object impl = impls.get(declaringClass);
-        if (impl == null) throw new IncompleteImplementationException(format("No implementation could be found for %s", method));
-
-        try {
-            if (Proxy.isProxyClass(impl.getClass())) {
-                // if it is a proxy, we get the handler and call it directly but with our proxy object
-                InvocationHandler wrappedHandler = Proxy.getInvocationHandler(impl);
-                return wrappedHandler.invoke(proxy, method, args);
-            } else {
-                return method.invoke(impl, args);
-            }
-        } catch (InvocationTargetException e) {
-            throw Preconditions.checkNotNull(e.getTargetException());
-        }
+    /**
+     * @return the implementation if it is bound as a handler, the invocation
+     *         handler of a proxy implementation, or null otherwise
+     */
+    private InvocationHandler getHandler(int slot, Object impl) {
+        if (impl == null) return null;
+        if (plan.isHandler(slot)) return (InvocationHandler) impl;
+        return Proxy.isProxyClass(impl.getClass()) ? Proxy.getInvocationHandler(impl) : null;
     }
 
-    protected T newProxyInstance() {
+    protected T newProxyInstance(MixinClassImpl<T> mixinClass) {
         try {
             return mixinClass.proxyConst.newInstance(this);
         } catch (Exception e) {
@@ -278,46 +134,4 @@ public class ProxyInvocationHandler<T> implements InvocationHandler, MixinImplem
         }
     }
 
-    protected void checkCompleteImplementation(Set<Class<?>> allMixinIntfs) {
-        Set<Class<?>> differences = getRemainers(allMixinIntfs);
-        if (!differences.isEmpty()) {
-            throw new IncompleteImplementationException(format("The following interfaces are  missing: %s", Joiner.on(", ").join(differences)));
-        }
-    }
-
-    protected ImmutableSet<Class<?>> getAllInterfaces(MixinClassImpl<T> mixinClass) {
-        return from(mixinClass.intfs).transformAndConcat(ALL_INTFS_FN).toSet();
-    }
-
-    protected Set<Class<?>> getRemainers(Set<Class<?>> allMixinIntfs) {
-        Set<Class<?>> allProvidersIntfs = from(providers).transformAndConcat(PROVIDER_IMPLEMENTED_INTFS_FN).transformAndConcat(ALL_INTFS_FN).toSet();
-        Set<Class<?>> differences = from(Sets.difference(allMixinIntfs, allProvidersIntfs)).filter(WITH_DECLARED_METHODS_FN).toSet();
-        return differences;
-    }
-
-    protected void instanciateProviders(Set<Class<?>> allMixinIntfs) {
-        LOGGER.trace("Instanciating providers for [{}]", allMixinIntfs);
-        for (InterfacesInstanceProvider provider : providers) {
-            Set<Class<?>> allProviderIntfs = from(provider.getImplementedInterfaces()).transformAndConcat(ALL_INTFS_FN).toSet();
-            Object impl = provider.provide();
-            for (Class<?> intf : allProviderIntfs ) {
-                if (!(allMixinIntfs.contains(intf) || intf == Object.class)) {
-                    LOGGER.trace("This Mixin class does not implement [{}], skipping its instance provider", intf);
-                    continue;
-                }
-                if (impls.containsKey(intf) && !provider.overrides()) {
-                    LOGGER.trace("[{}] was already implemented by prior instance provider, skipping this ones", intf);
-                } else {
-                    boolean overrides = impls.containsKey(intf) && provider.overrides();
-                    impls.put(intf, impl);
-                    LOGGER.trace("[{}] is {} by instance of [{}]", overrides ? "overriden" : "implemented", intf, impl.getClass());
-                }
-            }
-        }
-    }
-
-    protected void ensureObjectImplementation() {
-        impls.put(Object.class, new ObjectImplementation(impls.get(Object.class)));
-    }
-
-}
\ No newline at end of file
+}
@@ -0,0 +1,36 @@
+package platypus.internal;
+
+import java.lang.reflect.Method;
+
+import platypus.MixinInvocationListener;
+
+/**
+ * A {@link ProxyInvocationHandler} that notifies a listener after each call.
+ * It is only used by mixin classes with a listener, so that the others do not
+ * check for it on every call.
+ *
+ * @author rui.figueira@gmail.com (Rui Figueira)
+ */
+public class RecordingProxyInvocationHandler<T> extends ProxyInvocationHandler<T> {
+
+    private final MixinInvocationListener listener;
+
+    public RecordingProxyInvocationHandler(MixinClassImpl<T> mixinClass, DispatchPlan plan, Object[] impls, LazyImplementations lazyImpls) {
+        super(mixinClass, plan, impls, lazyImpls);
+        this.listener = mixinClass.listener;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        long start = System.nanoTime();
+        Object result;
+        try {
+            result = super.invoke(proxy, method, args);
+        } catch (Throwable e) {
+            listener.invoked(method, System.nanoTime() - start, e);
+            throw e;
+        }
+        listener.invoked(method, System.nanoTime() - start, null);
+        return result;
+    }
+}
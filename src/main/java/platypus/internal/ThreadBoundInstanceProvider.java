@@ -0,0 +1,13 @@
+package platypus.internal;
+
+import platypus.InstanceProvider;
+
+/**
+ * Marker interface of instance providers whose value depends on the calling
+ * thread, so that they always run on the thread creating the mixin instance,
+ * even when providers run concurrently.
+ *
+ * @author rui.figueira@gmail.com (Rui Figueira)
+ */
+public interface ThreadBoundInstanceProvider<T> extends InstanceProvider<T> {
+}
@@ -0,0 +1,234 @@
+package platypus.processor;
+
+import static java.lang.String.format;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.IntersectionType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.TypeVariable;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic.Kind;
+
+import platypus.MixinType;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Generates the mixin class of each {@link MixinType} interface at compile
+ * time.
+ *
+ * <p>
+ * The generated source has the same shape as the classes generated at
+ * runtime by {@code GeneratedMixinClass}: a constructor receiving an
+ * {@code Object[]}, one {@code impl<i>} field per interface declaring some
+ * method, where {@code impl0} holds the {@code Object} methods
+ * implementation, and methods that just call the corresponding field.
+ * </p>
+ *
+ * @author rui.figueira@gmail.com (Rui Figueira)
+ */
+@SupportedAnnotationTypes("platypus.MixinType")
+public class MixinTypeProcessor extends AbstractProcessor {
+
+    /**
+     * Appended to the binary name of an interface to get the name of its precompiled mixin class.
+     */
+    public static final String CLASS_NAME_SUFFIX = "$$Mixin";
+
+    private static final Set<String> OBJECT_METHODS = ImmutableSet.of("equals(java.lang.Object)", "hashCode()", "toString()");
+
+    private static class MethodBinding {
+
+        private final ExecutableElement method;
+        private final ExecutableType type;
+        private final TypeElement intf;
+
+        MethodBinding(ExecutableElement method, ExecutableType type, TypeElement intf) {
+            this.method = method;
+            this.type = type;
+            this.intf = intf;
+        }
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(MixinType.class)) {
+            if (element.getKind() != ElementKind.INTERFACE) {
+                processingEnv.getMessager().printMessage(Kind.ERROR, "@MixinType can only be used on interfaces", element);
+                continue;
+            }
+            TypeElement intf = (TypeElement) element;
+            if (!intf.getTypeParameters().isEmpty()) {
+                processingEnv.getMessager().printMessage(Kind.ERROR, "@MixinType interfaces cannot have type parameters", element);
+                continue;
+            }
+            try {
+                generate(intf);
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Kind.ERROR, format("Could not generate mixin class: %s", e.getMessage()), element);
+            }
+        }
+        return true;
+    }
+
+    private void generate(TypeElement intf) throws IOException {
+        Map<String, MethodBinding> methods = Maps.newLinkedHashMap();
+        Map<TypeElement, DeclaredType> fieldIntfs = Maps.newLinkedHashMap();
+        collectMethods((DeclaredType) intf.asType(), (DeclaredType) intf.asType(), methods, fieldIntfs, Sets.<TypeElement>newHashSet());
+
+        List<TypeElement> fields = Lists.newArrayList(fieldIntfs.keySet());
+        String packageName = processingEnv.getElementUtils().getPackageOf(intf).getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(intf).toString();
+        String className = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1)) + CLASS_NAME_SUFFIX;
+        String qualifiedName = packageName.isEmpty() ? className : packageName + "." + className;
+
+        PrintWriter out = new PrintWriter(processingEnv.getFiler().createSourceFile(qualifiedName, intf).openWriter());
+        try {
+            if (!packageName.isEmpty()) {
+                out.println(format("package %s;", packageName));
+                out.println();
+            }
+            out.println(format("// generated by %s, do not edit", getClass().getName()));
+            String visibility = intf.getModifiers().contains(Modifier.PUBLIC) ? "public " : "";
+            out.println(format("%sfinal class %s implements %s, platypus.internal.GeneratedMixin {", visibility, className, intf.getQualifiedName()));
+            out.println();
+
+            out.println("    private final java.lang.Object impl0;");
+            for (int i = 0; i < fields.size(); i++) {
+                out.println(format("    private final %s impl%d;", fieldIntfs.get(fields.get(i)), i + 1));
+            }
+            out.println();
+
+            out.println("    @SuppressWarnings(\"unchecked\")");
+            out.println(format("    public %s(java.lang.Object[] fields) {", className));
+            out.println("        this.impl0 = fields[0];");
+            for (int i = 0; i < fields.size(); i++) {
+                out.println(format("        this.impl%d = (%s) fields[%d];", i + 1, fieldIntfs.get(fields.get(i)), i + 1));
+            }
+            out.println("    }");
+
+            generateObjectMethods(out);
+            for (MethodBinding binding : methods.values()) {
+                generateForwardingMethod(out, binding, fields.indexOf(binding.intf) + 1);
+            }
+            out.println("}");
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Collects the methods to implement. When several interfaces declare the
+     * same method, the first one to declare it is the one whose implementation
+     * is called, as it happens with the classes generated at runtime.
+     */
+    private void collectMethods(DeclaredType mixinType, DeclaredType type, Map<String, MethodBinding> methods, Map<TypeElement, DeclaredType> fieldIntfs, Set<TypeElement> visited) {
+        Types types = processingEnv.getTypeUtils();
+        TypeElement intf = (TypeElement) type.asElement();
+        if (!visited.add(intf)) return;
+
+        for (ExecutableElement method : ElementFilter.methodsIn(intf.getEnclosedElements())) {
+            if (method.getModifiers().contains(Modifier.STATIC) || method.getModifiers().contains(Modifier.PRIVATE)) continue;
+
+            ExecutableType methodType = (ExecutableType) types.asMemberOf(mixinType, method);
+            List<TypeMirror> erasedParams = Lists.newArrayList();
+            for (TypeMirror param : methodType.getParameterTypes()) {
+                erasedParams.add(types.erasure(param));
+            }
+            String signature = format("%s(%s)", method.getSimpleName(), Joiner.on(",").join(erasedParams));
+            if (OBJECT_METHODS.contains(signature) || methods.containsKey(signature)) continue;
+
+            methods.put(signature, new MethodBinding(method, methodType, intf));
+            if (!fieldIntfs.containsKey(intf)) fieldIntfs.put(intf, type);
+        }
+        for (TypeMirror supertype : types.directSupertypes(type)) {
+            if (types.asElement(supertype).getKind() == ElementKind.INTERFACE) {
+                collectMethods(mixinType, (DeclaredType) supertype, methods, fieldIntfs, visited);
+            }
+        }
+    }
+
+    private void generateObjectMethods(PrintWriter out) {
+        out.println();
+        out.println("    @Override");
+        out.println("    public boolean equals(java.lang.Object obj) {");
+        out.println("        return impl0.equals(obj);");
+        out.println("    }");
+        out.println();
+        out.println("    @Override");
+        out.println("    public int hashCode() {");
+        out.println("        return impl0.hashCode();");
+        out.println("    }");
+        out.println();
+        out.println("    @Override");
+        out.println("    public java.lang.String toString() {");
+        out.println("        return impl0.toString();");
+        out.println("    }");
+    }
+
+    private void generateForwardingMethod(PrintWriter out, MethodBinding binding, int fieldIndex) {
+        List<String> typeVars = Lists.newArrayList();
+        for (TypeVariable typeVar : binding.type.getTypeVariables()) {
+            TypeMirror bound = typeVar.getUpperBound();
+            boolean unbounded = bound.getKind() == TypeKind.DECLARED && bound.toString().equals("java.lang.Object");
+            typeVars.add(unbounded ? typeVar.toString() : format("%s extends %s", typeVar, toSource(bound)));
+        }
+
+        List<String> params = Lists.newArrayList();
+        List<String> args = Lists.newArrayList();
+        List<? extends TypeMirror> paramTypes = binding.type.getParameterTypes();
+        for (int i = 0; i < paramTypes.size(); i++) {
+            boolean varArgs = binding.method.isVarArgs() && i == paramTypes.size() - 1;
+            String paramType = varArgs ? ((ArrayType) paramTypes.get(i)).getComponentType() + "..." : paramTypes.get(i).toString();
+            params.add(format("%s arg%d", paramType, i));
+            args.add("arg" + i);
+        }
+
+        boolean returnsVoid = binding.type.getReturnType().getKind() == TypeKind.VOID;
+        out.println();
+        out.println("    @Override");
+        out.println(format("    public %s%s %s(%s)%s {",
+                typeVars.isEmpty() ? "" : "<" + Joiner.on(", ").join(typeVars) + "> ",
+                binding.type.getReturnType(),
+                binding.method.getSimpleName(),
+                Joiner.on(", ").join(params),
+                binding.type.getThrownTypes().isEmpty() ? "" : " throws " + Joiner.on(", ").join(binding.type.getThrownTypes())));
+        out.println(format("        %sthis.impl%d.%s(%s);", returnsVoid ? "" : "return ", fieldIndex, binding.method.getSimpleName(), Joiner.on(", ").join(args)));
+        out.println("    }");
+    }
+
+    private static String toSource(TypeMirror bound) {
+        if (bound instanceof IntersectionType) {
+            return Joiner.on(" & ").join(((IntersectionType) bound).getBounds());
+        }
+        return bound.toString();
+    }
+}
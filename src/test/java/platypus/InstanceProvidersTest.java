@@ -0,0 +1,239 @@
+package platypus;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.Lists;
+
+public class InstanceProvidersTest {
+
+    private static final int THREADS = 8;
+
+    static class CountingProvider implements InstanceProvider<Object> {
+
+        final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Object provide() {
+            count.incrementAndGet();
+            return new Object();
+        }
+    }
+
+    public interface Named {
+        String name();
+    }
+
+    static class NamedImpl extends Mixin.Impl implements Named {
+        @Override
+        public String name() {
+            return "named";
+        }
+    }
+
+    @Test
+    public void testMemoizeConcurrently() throws Exception {
+        CountingProvider delegate = new CountingProvider();
+        final InstanceProvider<Object> provider = InstanceProviders.memoize(delegate);
+
+        List<Object> values = provideConcurrently(provider);
+
+        assertThat(delegate.count.get(), equalTo(1));
+        for (Object value : values) {
+            assertThat(value, sameInstance(values.get(0)));
+        }
+    }
+
+    @Test
+    public void testMemoizeLockFreeConcurrently() throws Exception {
+        CountingProvider delegate = new CountingProvider();
+        final InstanceProvider<Object> provider = InstanceProviders.memoizeLockFree(delegate);
+
+        List<Object> values = provideConcurrently(provider);
+
+        for (Object value : values) {
+            assertThat(value, sameInstance(values.get(0)));
+        }
+        assertThat(provider.provide(), sameInstance(values.get(0)));
+    }
+
+    @Test
+    public void testMemoizeWithExpiration() throws Exception {
+        final AtomicLong nanos = new AtomicLong();
+        Ticker ticker = new Ticker() {
+            @Override
+            public long read() {
+                return nanos.get();
+            }
+        };
+        CountingProvider delegate = new CountingProvider();
+        InstanceProvider<Object> provider = InstanceProviders.memoizeWithExpiration(delegate, 50, TimeUnit.MILLISECONDS, ticker);
+
+        Object value = provider.provide();
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(49));
+        assertThat(provider.provide(), sameInstance(value));
+        assertThat(delegate.count.get(), equalTo(1));
+
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        assertThat(provider.provide(), not(sameInstance(value)));
+        assertThat(delegate.count.get(), equalTo(2));
+    }
+
+    @Test
+    public void testMemoizeSoftly() {
+        CountingProvider delegate = new CountingProvider();
+        InstanceProvider<Object> provider = InstanceProviders.memoizeSoftly(delegate);
+
+        Object value = provider.provide();
+        assertThat(provider.provide(), sameInstance(value));
+        assertThat(delegate.count.get(), equalTo(1));
+    }
+
+    @Test
+    public void testPerThread() throws Exception {
+        CountingProvider delegate = new CountingProvider();
+        InstanceProvider<Object> provider = InstanceProviders.perThread(delegate);
+
+        Object value = provider.provide();
+        assertThat(provider.provide(), sameInstance(value));
+
+        List<Object> values = provideConcurrently(provider);
+        for (Object other : values) {
+            assertThat(other, not(sameInstance(value)));
+        }
+        assertThat(delegate.count.get(), equalTo(1 + THREADS));
+    }
+
+    @Test
+    public void testScoped() throws Exception {
+        final AtomicInteger closed = new AtomicInteger();
+        InstanceProvider<Closeable> provider = InstanceProviders.scoped(new InstanceProvider<Closeable>() {
+            @Override
+            public Closeable provide() {
+                return new Closeable() {
+                    @Override
+                    public void close() {
+                        closed.incrementAndGet();
+                    }
+                };
+            }
+        });
+
+        InstanceScope request1 = new InstanceScope("request1");
+        InstanceScope request2 = new InstanceScope("request2");
+        Object value1;
+        try (InstanceScope.Entry entry = request1.enter()) {
+            value1 = provider.provide();
+            assertThat(provider.provide(), sameInstance(value1));
+            try (InstanceScope.Entry nested = request2.enter()) {
+                assertThat(provider.provide(), not(sameInstance(value1)));
+            }
+            assertThat(provider.provide(), sameInstance(value1));
+        }
+        assertThat(InstanceScope.current(), nullValue());
+
+        request1.close();
+        assertThat(closed.get(), equalTo(1));
+        request2.close();
+        assertThat(closed.get(), equalTo(2));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testScopedOutsideScope() {
+        InstanceProviders.scoped(new CountingProvider()).provide();
+    }
+
+    @Test
+    public void testScopedNested() {
+        final List<InstanceProvider<Object>> inner = Lists.newArrayList();
+        for (int i = 0; i < 64; i++) {
+            inner.add(InstanceProviders.scoped(new CountingProvider()));
+        }
+        InstanceProvider<List<Object>> outer = InstanceProviders.scoped(new InstanceProvider<List<Object>>() {
+            @Override
+            public List<Object> provide() {
+                List<Object> values = Lists.newArrayList();
+                for (InstanceProvider<Object> provider : inner) {
+                    values.add(provider.provide());
+                }
+                return values;
+            }
+        });
+
+        InstanceScope scope = new InstanceScope("request");
+        try (InstanceScope.Entry entry = scope.enter()) {
+            List<Object> values = outer.provide();
+            assertThat(values.size(), equalTo(64));
+            assertThat(inner.get(63).provide(), sameInstance(values.get(63)));
+        }
+    }
+
+    @Test
+    public void testSharedMixinImpl() {
+        MixinClass<Named> namedClass = MixinClasses.create(Named.class);
+        final InstanceProvider<Named> provider = InstanceProviders.singleton(new InstanceProvider<Named>() {
+            @Override
+            public Named provide() {
+                return new NamedImpl();
+            }
+        });
+        MixinInitializer initializer = new AbstractMixinInitializer() {
+            @Override
+            protected void initialize() {
+                implement(Named.class).with(provider);
+            }
+        };
+
+        try {
+            namedClass.newInstance(initializer);
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), containsString("Mixin.Impl"));
+        }
+    }
+
+    private List<Object> provideConcurrently(final InstanceProvider<Object> provider) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Object>> futures = Lists.newArrayList();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        start.await();
+                        return provider.provide();
+                    }
+                }));
+            }
+            start.countDown();
+
+            List<Object> values = Lists.newArrayList();
+            for (Future<Object> future : futures) {
+                values.add(future.get());
+            }
+            return values;
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -1,20 +1,67 @@
 package platypus;
 
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
 
 import com.google.common.base.Defaults;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.reflect.AbstractInvocationHandler;
+import com.google.common.reflect.TypeToken;
+import com.google.common.util.concurrent.Uninterruptibles;
 
+@RunWith(Parameterized.class)
 public class MixinClassesTest {
 
+    @Parameters(name = "{0}")
+    public static Collection<Object[]> engines() {
+        return Arrays.asList(new Object[][] { { MixinEngine.GENERATED }, { MixinEngine.PROXY } });
+    }
+
+    private final MixinEngine engine;
+
+    public MixinClassesTest(MixinEngine engine) {
+        this.engine = engine;
+    }
+
+    private <T> MixinClass<T> create(Class<T> intf, Class<?> ... others) {
+        return MixinClasses.create(engine, intf, others);
+    }
+
     public interface Foo extends Mixin {
         String foo();
     }
@@ -26,6 +73,40 @@ public class MixinClassesTest {
     public interface FooBar extends Foo, Bar {
     }
 
+    public interface Counter {
+        long add(int delta, long factor);
+        void reset();
+    }
+
+    public interface Multiplier {
+        double mul(double a, long b, int ... rest);
+    }
+
+    public interface Failing {
+        void fail() throws IOException;
+    }
+
+    interface Hidden {
+        String hidden();
+    }
+
+    public class CounterImpl implements Counter {
+        long total;
+
+        @Override
+        public long add(int delta, long factor) {
+            return total += delta * factor;
+        }
+
+        @Override
+        public void reset() {
+            total = 0;
+        }
+    }
+
+    public class ResettableCounterImpl extends CounterImpl implements Resettable {
+    }
+
     public class FooImpl extends Mixin.Impl implements Foo {
 
         public FooImpl() {
@@ -57,7 +138,7 @@ public class MixinClassesTest {
 
     @Test
     public void testDefaultObjectMethods() {
-    	MixinClass<Bar> barClass = MixinClasses.create(Bar.class);
+    	MixinClass<Bar> barClass = create(Bar.class);
 
     	final BarImpl barImpl = new BarImpl();
     	Bar bar = barClass.newInstance(new AbstractMixinInitializer() {
@@ -75,7 +156,7 @@ public class MixinClassesTest {
 
     @Test
     public void testExplicitObjectMethods() {
-    	MixinClass<Bar> barClass = MixinClasses.create(Bar.class);
+    	MixinClass<Bar> barClass = create(Bar.class);
 
     	final FooImpl objImpl = new FooImpl();
     	final BarImpl barImpl = new BarImpl();
@@ -97,7 +178,7 @@ public class MixinClassesTest {
 
     @Test
     public void testSpecificImplementation() {
-        MixinClass<FooBar> fooBarClass = MixinClasses.create(FooBar.class, Foo.class, Bar.class);
+        MixinClass<FooBar> fooBarClass = create(FooBar.class, Foo.class, Bar.class);
 
         FooBar fooBar = fooBarClass.newInstance(new AbstractMixinInitializer() {
             @Override
@@ -113,7 +194,7 @@ public class MixinClassesTest {
 
     @Test
     public void testRemainers() {
-        MixinClass<FooBar> fooBarClass = MixinClasses.create(FooBar.class, Foo.class, Bar.class);
+        MixinClass<FooBar> fooBarClass = create(FooBar.class, Foo.class, Bar.class);
 
         FooBar fooBar = fooBarClass.newInstance(new AbstractMixinInitializer() {
             @Override
@@ -129,7 +210,7 @@ public class MixinClassesTest {
 
     @Test
     public void testOverride() {
-        MixinClass<FooBar> fooBarClass = MixinClasses.create(FooBar.class, Foo.class, Bar.class);
+        MixinClass<FooBar> fooBarClass = create(FooBar.class, Foo.class, Bar.class);
 
         FooBar fooBar = fooBarClass.newInstance(new AbstractMixinInitializer() {
             @Override
@@ -146,7 +227,7 @@ public class MixinClassesTest {
 
     @Test(expected = IncompleteImplementationException.class)
     public void testInterfaceWithNoImplementation() {
-        MixinClass<FooBar> fooBarClass = MixinClasses.create(FooBar.class);
+        MixinClass<FooBar> fooBarClass = create(FooBar.class);
 
         fooBarClass.newInstance(new AbstractMixinInitializer() {
             @Override
@@ -159,7 +240,7 @@ public class MixinClassesTest {
 
     @Test(expected = IncompleteImplementationException.class)
     public void testIncompleteImplementation() {
-        MixinClass<FooBar> fooBarClass = MixinClasses.create(FooBar.class);
+        MixinClass<FooBar> fooBarClass = create(FooBar.class);
 
         fooBarClass.newInstance(new AbstractMixinInitializer() {
             @Override
@@ -172,7 +253,7 @@ public class MixinClassesTest {
     @Test
     public void testInvocationHandlerImplementation() {
         // given
-        MixinClass<FooBar> fooBarClass = MixinClasses.create(FooBar.class);
+        MixinClass<FooBar> fooBarClass = create(FooBar.class);
         class TestInvocationHandler extends AbstractInvocationHandler {
 
             Object proxy;
@@ -200,10 +281,148 @@ public class MixinClassesTest {
         assertThat(handler.proxy, sameInstance((Object) foobar));
     }
 
+    @Test
+    public void testInvocationHandlerBindings() {
+        // given
+        MixinClass<FooBar> fooBarClass = create(FooBar.class);
+        final List<Object> proxies = Lists.newArrayList();
+        final InvocationHandler handler = new AbstractInvocationHandler() {
+            @Override
+            protected Object handleInvocation(Object proxy, Method method, Object[] args) throws Throwable {
+                proxies.add(proxy);
+                return "handled " + method.getName();
+            }
+
+            @Override
+            public String toString() {
+                return "handler";
+            }
+        };
+
+        // when
+        FooBar fooBar = fooBarClass.newInstance(new AbstractMixinInitializer() {
+            @Override
+            protected void initialize() {
+                implement(Foo.class).with(new FooImpl());
+                implement(Object.class).with(handler);
+                implementRemainers().with(handler);
+            }
+        });
+
+        // then
+        assertThat(fooBar.bar(), equalTo("handled bar"));
+        assertThat(fooBar.foo(), equalTo("generic foo"));
+        assertThat(fooBar.toString(), equalTo("handler"));
+        assertThat(proxies, equalTo(Arrays.<Object>asList(fooBar)));
+    }
+
+    @Test
+    public void testObjectInvocationHandler() {
+        // given
+        final List<Object> proxies = Lists.newArrayList();
+        final InvocationHandler handler = new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                proxies.add(proxy);
+                if (method.getName().equals("equals")) return proxy == args[0];
+                if (method.getName().equals("hashCode")) return 42;
+                return "handled " + method.getName();
+            }
+        };
+        MixinClass<Bar> barClass = create(Bar.class);
+
+        // when
+        Bar bar = barClass.newInstance(new AbstractMixinInitializer() {
+            @Override
+            protected void initialize() {
+                implement(Bar.class).with(new BarImpl());
+                implement(Object.class).with(handler);
+            }
+        });
+
+        // then
+        assertThat(bar.toString(), equalTo("handled toString"));
+        assertThat(bar.hashCode(), equalTo(42));
+        assertThat(bar.equals("other"), is(false));
+        assertThat(proxies, equalTo(Arrays.<Object>asList(bar, bar, bar)));
+    }
+
+    @Test
+    public void testNestedMixinImplementation() {
+        // given
+        final List<Object> proxies = Lists.newArrayList();
+        final InvocationHandler handler = new AbstractInvocationHandler() {
+            @Override
+            protected Object handleInvocation(Object proxy, Method method, Object[] args) throws Throwable {
+                proxies.add(proxy);
+                return "handled bar";
+            }
+        };
+        final Bar innerBar = MixinClasses.create(MixinEngine.PROXY, Bar.class).newInstance(new AbstractMixinInitializer() {
+            @Override
+            protected void initialize() {
+                implement(Bar.class).with(handler);
+            }
+        });
+        MixinClass<FooBar> fooBarClass = create(FooBar.class);
+
+        // when
+        FooBar fooBar = fooBarClass.newInstance(new AbstractMixinInitializer() {
+            @Override
+            protected void initialize() {
+                implement(Foo.class).with(new FooImpl());
+                implement(Bar.class).with(innerBar);
+            }
+        });
+
+        // then
+        assertThat(fooBar.bar(), equalTo("handled bar"));
+        assertThat(innerBar.bar(), equalTo("handled bar"));
+        assertThat(proxies, equalTo(Arrays.<Object>asList(fooBar, innerBar)));
+    }
+
+    @Test
+    public void testMixinIsAs() {
+        // given
+        MixinClass<Foo> fooClass = create(Foo.class, Counter.class);
+        final FooImpl fooImpl = new FooImpl();
+        assertThat(fooImpl.is(Counter.class), is(false));
+
+        // when
+        Foo foo = fooClass.newInstance(new AbstractMixinInitializer() {
+            @Override
+            protected void initialize() {
+                implement(Foo.class).with(fooImpl);
+                implement(Counter.class).with(new CounterImpl());
+            }
+        });
+
+        // then
+        assertThat(foo.is(Counter.class), is(true));
+        assertThat(foo.is(new TypeToken<Counter>() {}), is(true));
+        assertThat(foo.is(Object.class), is(true));
+        assertThat(foo.is(Bar.class), is(false));
+        assertThat(foo.is(FooImpl.class), is(false));
+        assertThat(foo.as(new TypeToken<Counter>() {}), sameInstance((Object) foo));
+        assertThat(fooImpl.as(Counter.class), sameInstance((Object) foo));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testMixinAsNotImplemented() {
+        MixinClass<Foo> fooClass = create(Foo.class);
+        Foo foo = fooClass.newInstance(new AbstractMixinInitializer() {
+            @Override
+            protected void initialize() {
+                implement(Foo.class).with(new FooImpl());
+            }
+        });
+        foo.as(Bar.class);
+    }
+
     @Test
     public void testMixinInitialization() {
         // given
-        MixinClass<Mixin> mixinClass = MixinClasses.create(Mixin.class, FooBar.class);
+        MixinClass<Mixin> mixinClass = create(Mixin.class, FooBar.class);
 
         // when
         final Foo foo = new FooImpl();
@@ -224,7 +443,7 @@ public class MixinClassesTest {
 
     @Test
     public void testToStringOverride() {
-        MixinClass<Mixin> mixinClass = MixinClasses.create(Mixin.class, Foo.class);
+        MixinClass<Mixin> mixinClass = create(Mixin.class, Foo.class);
         final Foo foo = new FooImpl();
         // this will initialize foo with the proxy
         Mixin mixin = mixinClass.newInstance(new AbstractMixinInitializer() {
@@ -241,4 +460,909 @@ public class MixinClassesTest {
         });
         assertThat(mixin.toString(), equalTo("I'm an object"));
     }
+
+    @Test
+    public void testPrimitiveAndVoidMethods() {
+        MixinClass<Counter> counterClass = create(Counter.class);
+        Counter counter = counterClass.newInstance(new AbstractMixinInitializer() {
+            @Override
+            protected void initialize() {
+                implement(Counter.class).with(new CounterImpl());
+            }
+        });
+
+        assertThat(counterClass.getEngine(), equalTo(engine));
+        assertThat(counter.add(2, 3L), equalTo(6L));
+        assertThat(counter.add(1, 4L), equalTo(10L));
+        counter.reset();
+        assertThat(counter.add(1, 1L), equalTo(1L));
+    }
+
+    @Test
+    public void testVarArgsMethods() throws Exception {
+        MixinClass<Multiplier> multiplierClass = create(Multiplier.class);
+        Multiplier multiplier = multiplierClass.newInstance(new AbstractMixinInitializer() {
+            @Override
+            protected void initialize() {
+                implement(Multiplier.class).with(new Multiplier() {
+                    @Override
+                    public double mul(double a, long b, int ... rest) {
+                        double result = a * b;
+                        for (int i : rest) {
+                            result *= i;
+                        }
+                        return result;
+                    }
+                });
+            }
+        });
+
+        assertThat(multiplier.mul(1.5, 2L, 2, 2), equalTo(12.0));
+        assertThat(multiplier.mul(1.5, 2L), equalTo(3.0));
+
+        Object[] results = new Object[1];
+        multiplierClass.batch(Multiplier.class.getMethod("mul", double.class, long.class, int[].class)).invoke(Arrays.asList(multiplier), results, 1.5, 2L, new int[] { 4 });
+        assertThat(results[0], is((Object) 12.0));
+    }
+
+    @Test
+    public void testNonPublicInterfaceUsesProxyEngine() {
+        MixinClass<Hidden> hiddenClass = create(Hidden.class);
+
+        assertThat(hiddenClass.getEngine(), equalTo(MixinEngine.PROXY));
+    }
+
+    @Test
+    public void testInstancesWithSameBindings() {
+        MixinClass<Counter> counterClass = create(Counter.class);
+        MixinInitializer initializer = new AbstractMixinInitializer() {
+            @Override
+            protected void initialize() {
+                implementRemainers().with(new CounterImpl());
+            }
+        };
+        Counter counter1 = counterClass.newInstance(initializer);
+        Counter counter2 = counterClass.newInstance(initializer);
+
+        assertThat(counter1.add(1, 1L), equalTo(1L));
+        assertThat(counter2.add(2, 1L), equalTo(2L));
+        assertThat(counter1.add(1, 1L), equalTo(2L));
+        assertThat(counter1.equals(counter2), equalTo(false));
+    }
+
+    @Test(expected = IOException.class)
+    public void testExceptionsAreNotWrapped() throws IOException {
+        MixinClass<Failing> failingClass = create(Failing.class);
+        Failing failing = failingClass.newInstance(new AbstractMixinInitializer() {
+            @Override
+            protected void initialize() {
+                implement(Failing.class).with(new Failing() {
+                    @Override
+                    public void fail() throws IOException {
+                        throw new IOException();
+                    }
+                });
+            }
+        });
+
+        failing.fail();
+    }
+
+    @Test
+    public void testCompiledInitializer() {
+        MixinClass<FooBar> fooBarClass = create(FooBar.class);
+        final BarImpl barImpl = new BarImpl();
+        MixinFactory<FooBar> factory = fooBarClass.compile(new AbstractMixinInitializer() {
+            @Override
+            protected void initialize() {
+                implement(Foo.class).with(new InstanceProvider<Foo>() {
+                    @Override
+                    public Foo provide() {
+                        return new FooImpl();
+                    }
+                });
+                implement(Bar.class).with(barImpl);
+            }
+        });
+
+        FooBar fooBar1 = factory.newInstance();
+        FooBar fooBar2 = factory.newInstance();
+
+        assertThat(factory.getMixinClass(), sameInstance(fooBarClass));
+        assertThat(fooBar1, not(sameInstance(fooBar2)));
+        assertThat(fooBar1.as(Foo.class), sameInstance((Foo) fooBar1));
+        assertThat(fooBar2.as(Foo.class), sameInstance((Foo) fooBar2));
+        assertThat(fooBar1.bar(), equalTo("generic bar"));
+        assertThat(fooBar2.foo(), equalTo("generic foo"));
+    }
+
+    @Test
+    public void testNewInstances() {
+        MixinClass<FooBar> fooBarClass = create(FooBar.class);
+
+        List<FooBar> fooBars = fooBarClass.newInstances(3, new AbstractMixinInitializer() {
+            @Override
+            protected void initialize() {
+                implement(Foo.class).with(new InstanceProvider<Foo>() {
+                    @Override
+                    public Foo provide() {
+                        return new FooImpl();
+                    }
+                });
+                implement(Bar.class).with(new BarImpl());
+            }
+        });
+
+        assertThat(fooBars.size(), is(3));
+        assertThat(fooBars.get(0), not(sameInstance(fooBars.get(1))));
+        for (FooBar fooBar : fooBars) {
+            assertThat(fooBar.as(Foo.class), sameInstance((Foo) fooBar));
+            assertThat(fooBar.foo(), equalTo("generic foo"));
+            assertThat(fooBar.bar(), equalTo("generic bar"));
+        }
+    }
+
+    @Test(expected = IncompleteImplementationException.class)
+    public void testCompiledIncompleteImplementation() {
+        MixinClass<FooBar> fooBarClass = create(FooBar.class);
+
+        fooBarClass.compile(new AbstractMixinInitializer() {
+            @Override
+            protected void initialize() {
+                implement(Bar.class).with(new BarImpl());
+            }
+        });
+    }
+
+    @Test
+    public void testLazyInstantiation() {
+        // given
+        MixinClass<FooBar> fooBarClass = MixinClasses.builder(FooBar.class).engine(engine).lazy().build();
+        final AtomicInteger fooProvided = new AtomicInteger();
+        final AtomicInteger barProvided = new AtomicInteger();
+
+        // when
+        FooBar fooBar = fooBarClass.newInstance(new AbstractMixinInitializer() {
+            @Override
+            protected void initialize() {
+                implement(Foo.class).with(new InstanceProvider<Foo>() {
+                    @Override
+                    public Foo provide() {
+                        fooProvided.incrementAndGet();
+                        return new FooImpl();
+                    }
+                });
+                implement(Bar.class).with(new InstanceProvider<Bar>() {
+                    @Override
+                    public Bar provide() {
+                        barProvided.incrementAndGet();
+                        return new BarImpl();
+                    }
+                });
+            }
+        });
+
+        // then
+        assertThat(fooProvided.get(), is(0));
+        assertThat(barProvided.get(), is(0));
+        assertThat(fooBar.bar(), equalTo("generic bar"));
+        assertThat(fooBar.bar(), equalTo("generic bar"));
+        assertThat(fooProvided.get(), is(0));
+        assertThat(barProvided.get(), is(1));
+        assertThat(fooBar.foo(), equalTo("generic foo"));
+        assertThat(fooProvided.get(), is(1));
+        assertThat(fooBar.as(Foo.class), sameInstance((Foo) fooBar));
+    }
+
+    @Test
+    public void testLazyInvocationHandlerImplementation() {
+        // given
+        MixinClass<FooBar> fooBarClass = MixinClasses.builder(FooBar.class).engine(engine).lazy().build();
+        final AtomicInteger invocations = new AtomicInteger();
+        final InvocationHandler handler = new AbstractInvocationHandler() {
+            @Override
+            protected Object handleInvocation(Object proxy, Method method, Object[] args) throws Throwable {
+                invocations.incrementAndGet();
+                return ((Foo) proxy).foo();
+            }
+        };
+
+        // when
+        FooBar fooBar = fooBarClass.newInstance(new AbstractMixinInitializer() {
+            @Override
+            protected void initialize() {
+                implement(Foo.class).with(new FooImpl());
+                implement(Bar.class).with(handler);
+            }
+        });
+
+        // then
+        assertThat(fooBar.bar(), equalTo("generic foo"));
+        assertThat(fooBar.bar(), equalTo("generic foo"));
+        assertThat(invocations.get(), is(2));
+    }
+
+    public interface FooCounter extends Foo, Counter {
+    }
+
+    @Test
+    public void testPooledInstances() {
+        // given
+        MixinClass<FooCounter> fooCounterClass = create(FooCounter.class);
+        final AtomicInteger fooProvided = new AtomicInteger();
+        final AtomicInteger counterProvided = new AtomicInteger();
+        MixinPool<FooCounter> pool = fooCounterClass.compile(new AbstractMixinInitializer() {
+            @Override
+            protected void initialize() {
+                implement(Foo.class).with(new InstanceProvider<Foo>() {
+                    @Override
+                    public Foo provide() {
+                        fooProvided.incrementAndGet();
+                        return new FooImpl();
+                    }
+                });
+                implement(Counter.class).with(new InstanceProvider<Counter>() {
+                    @Override
+                    public Counter provide() {
+                        counterProvided.incrementAndGet();
+                        return new ResettableCounterImpl();
+                    }
+                });
+            }
+        }).pooled(1);
+
+        // when
+        FooCounter fooCounter1 = pool.newInstance();
+        Foo foo1 = fooCounter1.as(Foo.class);
+        fooCounter1.add(2, 3);
+        pool.release(fooCounter1);
+        FooCounter fooCounter2 = pool.newInstance();
+        FooCounter fooCounter3 = pool.newInstance();
+
+        // then
+        assertThat(fooCounter2, sameInstance(fooCounter1));
+        assertThat(fooCounter3, not(sameInstance(fooCounter1)));
+        assertThat(fooProvided.get(), is(3));
+        assertThat(counterProvided.get(), is(2));
+        assertThat(fooCounter2.add(1, 1), is(1L));
+        assertThat(fooCounter2.foo(), equalTo("generic foo"));
+        assertThat(fooCounter2.as(Foo.class), sameInstance((Foo) fooCounter2));
+        assertThat(foo1.as(Foo.class), sameInstance(foo1));
+        assertThat(fooCounter2.equals(fooCounter1), is(true));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testPooledInstanceReleasedTwice() {
+        MixinClass<Bar> barClass = create(Bar.class);
+        MixinPool<Bar> pool = barClass.compile(new AbstractMixinInitializer() {
+            @Override
+            protected void initialize() {
+                implement(Bar.class).with(new BarImpl());
+            }
+        }).pooled(2);
+
+        Bar bar = pool.newInstance();
+        pool.release(bar);
+        pool.release(bar);
+    }
+
+    @Test
+    public void testPooledInstancesDontWriteFinalFields() throws Exception {
+        MixinClass<Bar> barClass = create(Bar.class);
+        MixinInitializer initializer = new AbstractMixinInitializer() {
+            @Override
+            protected void initialize() {
+                implement(Bar.class).with(new InstanceProvider<Bar>() {
+                    @Override
+                    public Bar provide() {
+                        return new BarImpl();
+                    }
+                });
+            }
+        };
+        MixinPool<Bar> pool = barClass.compile(initializer).pooled(1);
+
+        Bar bar = pool.newInstance();
+        pool.release(bar);
+        assertThat(pool.newInstance(), sameInstance(bar));
+        assertThat(bar.bar(), equalTo("generic bar"));
+
+        if (engine == MixinEngine.GENERATED) {
+            assertThat(Modifier.isFinal(bar.getClass().getDeclaredField("impl1").getModifiers()), is(false));
+            assertThat(Modifier.isFinal(barClass.newInstance(initializer).getClass().getDeclaredField("impl1").getModifiers()), is(true));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testPooledInstanceReleasedTwiceWhenFull() {
+        MixinClass<Bar> barClass = create(Bar.class);
+        MixinPool<Bar> pool = barClass.compile(new AbstractMixinInitializer() {
+            @Override
+            protected void initialize() {
+                implement(Bar.class).with(new BarImpl());
+            }
+        }).pooled(1);
+
+        Bar bar1 = pool.newInstance();
+        Bar bar2 = pool.newInstance();
+        pool.release(bar1);
+        pool.release(bar2);
+        pool.release(bar2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReleaseInstanceFromOtherPool() {
+        MixinClass<Bar> barClass = create(Bar.class);
+        MixinFactory<Bar> factory = barClass.compile(new AbstractMixinInitializer() {
+            @Override
+            protected void initialize() {
+                implement(Bar.class).with(new BarImpl());
+            }
+        });
+
+        factory.pooled(1).release(factory.pooled(1).newInstance());
+    }
+
+    public interface CounterFailing extends Counter, Failing {
+    }
+
+    @Test
+    public void testInvocationListener() throws Exception {
+        // given
+        MixinMetrics metrics = new MixinMetrics();
+        MixinClass<CounterFailing> counterClass = MixinClasses.builder(CounterFailing.class).engine(engine).listener(metrics).build();
+        CounterFailing counter = counterClass.newInstance(new AbstractMixinInitializer() {
+            @Override
+            protected void initialize() {
+                implement(Counter.class).with(new CounterImpl());
+                implement(Failing.class).with(new Failing() {
+                    @Override
+                    public void fail() throws IOException {
+                        throw new IOException();
+                    }
+                });
+            }
+        });
+
+        // when
+        assertThat(counter.add(2, 3L), is(6L));
+        assertThat(counter.add(1, 1L), is(7L));
+        counter.reset();
+        try {
+            counter.fail();
+        } catch (IOException e) {
+            // expected
+        }
+
+        // then
+        Method add = Counter.class.getMethod("add", int.class, long.class);
+        assertThat(metrics.getMethodMetrics(add).getCount(), is(2L));
+        assertThat(metrics.getMethodMetrics(add).getFailures(), is(0L));
+        assertThat(metrics.getMethodMetrics(Counter.class.getMethod("reset")).getCount(), is(1L));
+        assertThat(metrics.getMethodMetrics(Failing.class.getMethod("fail")).getFailures(), is(1L));
+        assertThat(metrics.getMethodMetrics(Object.class.getMethod("hashCode")), is((Object) null));
+        counter.hashCode();
+        assertThat(metrics.getMethodMetrics(Object.class.getMethod("hashCode")).getCount(), is(1L));
+    }
+
+    @Test
+    public void testInterceptors() {
+        // given
+        final List<String> calls = Lists.newArrayList();
+        MixinClass<FooCounter> fooCounterClass = create(FooCounter.class);
+        final FooCounter[] intercepted = new FooCounter[1];
+        FooCounter fooCounter = fooCounterClass.newInstance(new AbstractMixinInitializer() {
+            @Override
+            protected void initialize() {
+                implement(Foo.class).with(new FooImpl());
+                implement(Counter.class).with(new CounterImpl());
+                intercept(Counter.class).with(new MixinInterceptor() {
+                    @Override
+                    public Object intercept(MixinInvocation invocation) throws Throwable {
+                        calls.add("outer " + invocation.getMethod().getName());
+                        intercepted[0] = (FooCounter) invocation.getMixin();
+                        return invocation.proceed();
+                    }
+                });
+                intercept(Counter.class).with(new MixinInterceptor() {
+                    @Override
+                    public Object intercept(MixinInvocation invocation) throws Throwable {
+                        calls.add("inner " + invocation.getMethod().getName());
+                        if (invocation.getArguments().length > 0) invocation.getArguments()[0] = 10;
+                        return invocation.proceed();
+                    }
+                });
+            }
+        });
+
+        // when
+        long result = fooCounter.add(1, 2L);
+        fooCounter.reset();
+
+        // then
+        assertThat(result, is(20L));
+        assertThat(calls, equalTo(Arrays.asList("outer add", "inner add", "outer reset", "inner reset")));
+        assertThat(intercepted[0], sameInstance(fooCounter));
+        assertThat(fooCounter.foo(), equalTo("generic foo"));
+        assertThat(calls.size(), is(4));
+    }
+
+    @Test
+    public void testInterceptorRetry() throws Exception {
+        // given
+        final AtomicInteger attempts = new AtomicInteger();
+        MixinClass<Failing> failingClass = MixinClasses.builder(Failing.class).engine(engine).lazy().build();
+        Failing failing = failingClass.newInstance(new AbstractMixinInitializer() {
+            @Override
+            protected void initialize() {
+                implement(Failing.class).with(new Failing() {
+                    @Override
+                    public void fail() throws IOException {
+                        if (attempts.incrementAndGet() < 3) throw new IOException();
+                    }
+                });
+                intercept(Failing.class).with(new MixinInterceptor() {
+                    @Override
+                    public Object intercept(MixinInvocation invocation) throws Throwable {
+                        for (;;) {
+                            try {
+                                return invocation.proceed();
+                            } catch (IOException e) {
+                                // retry
+                            }
+                        }
+                    }
+                });
+            }
+        });
+
+        // when
+        failing.fail();
+
+        // then
+        assertThat(attempts.get(), is(3));
+    }
+
+    @Test
+    public void testCanonicalMixinClasses() {
+        assertThat(create(Foo.class, Bar.class), sameInstance(create(Foo.class, Bar.class)));
+        assertThat(MixinClasses.builder(Foo.class).engine(engine).addInterfaces(Bar.class).build(), sameInstance(create(Foo.class, Bar.class)));
+        assertThat(create(Bar.class, Foo.class), not(sameInstance(create(Foo.class, Bar.class))));
+        assertThat(MixinClasses.builder(Foo.class).engine(engine).lazy().build(), not(sameInstance(create(Foo.class))));
+        assertThat(MixinClasses.builder(Foo.class).engine(engine).parallelProviders().build(), sameInstance(MixinClasses.builder(Foo.class).engine(engine).parallelProviders().build()));
+
+        // custom executors are not kept by shared mixin classes
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            assertThat(MixinClasses.builder(Foo.class).engine(engine).parallelProviders(executor).build(), not(sameInstance(MixinClasses.builder(Foo.class).engine(engine).parallelProviders(executor).build())));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCanonicalMixinClassesDontPinClassLoaders() throws Exception {
+        // given a platypus loaded by its own class loader, as in a redeployed application
+        URL platypusClasses = MixinClasses.class.getProtectionDomain().getCodeSource().getLocation();
+        URLClassLoader loader = new URLClassLoader(new URL[] { platypusClasses }, getClass().getClassLoader()) {
+            @Override
+            protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+                synchronized (getClassLoadingLock(name)) {
+                    if (!name.startsWith("platypus.")) return super.loadClass(name, resolve);
+                    Class<?> cls = findLoadedClass(name);
+                    return cls != null ? cls : findClass(name);
+                }
+            }
+        };
+        Class<?> mixinClasses = loader.loadClass(MixinClasses.class.getName());
+        Class<?> mixinEngine = loader.loadClass(MixinEngine.class.getName());
+        Method create = mixinClasses.getMethod("create", mixinEngine, Class.class, Class[].class);
+        Object engineValue = mixinEngine.getField(engine.name()).get(null);
+
+        // when a mixin class of a JDK interface is registered, and the class loader discarded
+        Object mixinClass = create.invoke(null, engineValue, Runnable.class, new Class<?>[0]);
+        assertThat(create.invoke(null, engineValue, Runnable.class, new Class<?>[0]), sameInstance(mixinClass));
+        WeakReference<ClassLoader> loaderRef = new WeakReference<ClassLoader>(loader);
+        loader.close();
+        loader = null;
+        mixinClasses = null;
+        mixinEngine = null;
+        create = null;
+        engineValue = null;
+        mixinClass = null;
+
+        // then
+        for (int i = 0; i < 50 && loaderRef.get() != null; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertThat(loaderRef.get(), equalTo(null));
+    }
+
+    @Test
+    public void testCachedHashCode() {
+        // given
+        final AtomicInteger hashCodeCalls = new AtomicInteger();
+        final Object key = new Object() {
+            @Override
+            public int hashCode() {
+                hashCodeCalls.incrementAndGet();
+                return 42;
+            }
+        };
+        MixinClass<Bar> barClass = MixinClasses.builder(Bar.class).engine(engine).cacheHashCode().build();
+        Bar bar = barClass.newInstance(new AbstractMixinInitializer() {
+            @Override
+            protected void initialize() {
+                implement(Object.class).with(key);
+                implement(Bar.class).with(new BarImpl());
+            }
+        });
+
+        // when
+        Map<Bar, String> map = Maps.newHashMap();
+        map.put(bar, "bar");
+
+        // then
+        assertThat(bar.hashCode(), is(42));
+        assertThat(map.get(bar), equalTo("bar"));
+        assertThat(bar.equals(bar), is(true));
+        assertThat(hashCodeCalls.get(), is(1));
+    }
+
+    public interface Fetcher {
+        CompletableFuture<String> fetch(String key);
+        Future<String> fetchThread();
+        CompletionStage<String> fetchFailing() throws IOException;
+        String name();
+    }
+
+    public class FetcherImpl implements Fetcher {
+        @Override
+        public CompletableFuture<String> fetch(String key) {
+            return CompletableFuture.completedFuture(key.toUpperCase());
+        }
+
+        @Override
+        public Future<String> fetchThread() {
+            return CompletableFuture.completedFuture(Thread.currentThread().getName());
+        }
+
+        @Override
+        public CompletionStage<String> fetchFailing() throws IOException {
+            throw new IOException("failed");
+        }
+
+        @Override
+        public String name() {
+            return Thread.currentThread().getName();
+        }
+    }
+
+    @Test
+    public void testAsyncImplementation() throws Exception {
+        // given
+        final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, "fetcher");
+            }
+        });
+        try {
+            MixinClass<Fetcher> fetcherClass = create(Fetcher.class);
+            Fetcher fetcher = fetcherClass.newInstance(new AbstractMixinInitializer() {
+                @Override
+                protected void initialize() {
+                    implement(Fetcher.class).asyncWith(new FetcherImpl(), executor);
+                }
+            });
+
+            // then
+            assertThat(fetcher.fetch("key").get(), equalTo("KEY"));
+            assertThat(fetcher.fetchThread().get(), equalTo("fetcher"));
+            assertThat(fetcher.name(), equalTo(Thread.currentThread().getName()));
+            try {
+                fetcher.fetchFailing().toCompletableFuture().get();
+                fail();
+            } catch (ExecutionException e) {
+                assertThat(e.getCause(), instanceOf(IOException.class));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testBatchInvocation() throws Exception {
+        // given
+        MixinClass<Counter> counterClass = create(Counter.class);
+        List<Counter> counters = counterClass.newInstances(5000, new AbstractMixinInitializer() {
+            @Override
+            protected void initialize() {
+                implement(Counter.class).with(new InstanceProvider<Counter>() {
+                    @Override
+                    public Counter provide() {
+                        return new CounterImpl();
+                    }
+                });
+            }
+        });
+        MixinBatch<Counter> add = counterClass.batch(Counter.class.getMethod("add", int.class, long.class));
+        Object[] results = new Object[counters.size()];
+
+        // when
+        add.invoke(counters, results, 1, 2L);
+        add.invokeParallel(counters, results, 2, 3L);
+
+        // then
+        for (Object result : results) {
+            assertThat(result, is((Object) 8L));
+        }
+        assertThat(counters.get(0).add(0, 0L), is(8L));
+    }
+
+    @Test
+    public void testBatchObjectMethods() throws Exception {
+        // given
+        MixinClass<Bar> barClass = create(Bar.class);
+        List<Bar> bars = barClass.newInstances(3, new AbstractMixinInitializer() {
+            @Override
+            protected void initialize() {
+                implement(Bar.class).with(new BarImpl());
+                implement(Object.class).with("bar");
+            }
+        });
+        Object[] results = new Object[bars.size()];
+
+        // when
+        barClass.batch(Object.class.getMethod("getClass")).invoke(bars, results);
+
+        // then
+        for (Object result : results) {
+            assertThat(result, is((Object) bars.get(0).getClass()));
+        }
+
+        // when
+        barClass.batch(Object.class.getMethod("toString")).invoke(bars, results);
+
+        // then
+        for (Object result : results) {
+            assertThat(result, is((Object) "bar"));
+        }
+    }
+
+    @Test
+    public void testParallelProviders() {
+        // given
+        final CountDownLatch bothProviding = new CountDownLatch(2);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        MixinClass<FooBar> fooBarClass = MixinClasses.builder(FooBar.class).engine(engine).parallelProviders(executor).build();
+
+        // when
+        FooBar fooBar = fooBarClass.newInstance(new AbstractMixinInitializer() {
+            @Override
+            protected void initialize() {
+                implement(Foo.class).with(new InstanceProvider<Foo>() {
+                    @Override
+                    public Foo provide() {
+                        bothProviding.countDown();
+                        Uninterruptibles.awaitUninterruptibly(bothProviding, 5, TimeUnit.SECONDS);
+                        return new FooImpl();
+                    }
+                });
+                implement(Bar.class).with(new InstanceProvider<Bar>() {
+                    @Override
+                    public Bar provide() {
+                        bothProviding.countDown();
+                        Uninterruptibles.awaitUninterruptibly(bothProviding, 5, TimeUnit.SECONDS);
+                        return new BarImpl();
+                    }
+                });
+                override(Bar.class).with(new AltBarImpl());
+            }
+        });
+        executor.shutdown();
+
+        // then
+        assertThat(bothProviding.getCount(), is(0L));
+        assertThat(fooBar.foo(), equalTo("generic foo"));
+        assertThat(fooBar.bar(), equalTo("alternative generic bar"));
+        assertThat(fooBar.as(Foo.class), sameInstance((Foo) fooBar));
+    }
+
+    @Test(timeout = 20000)
+    public void testParallelProvidersFromPoolThreads() throws Exception {
+        // given
+        final MixinClass<FooBar> fooBarClass = MixinClasses.builder(FooBar.class).engine(engine).parallelProviders().build();
+        final InstanceProvider<Foo> fooProvider = new InstanceProvider<Foo>() {
+            @Override
+            public Foo provide() {
+                Uninterruptibles.sleepUninterruptibly(50, TimeUnit.MILLISECONDS);
+                return new FooImpl();
+            }
+        };
+        final InstanceProvider<Bar> barProvider = new InstanceProvider<Bar>() {
+            @Override
+            public Bar provide() {
+                Uninterruptibles.sleepUninterruptibly(50, TimeUnit.MILLISECONDS);
+                return new BarImpl();
+            }
+        };
+
+        // when every thread of the pool creates instances
+        List<Future<FooBar>> futures = Lists.newArrayList();
+        for (int i = 0; i < 4 * ForkJoinPool.commonPool().getParallelism(); i++) {
+            futures.add(ForkJoinPool.commonPool().submit(new Callable<FooBar>() {
+                @Override
+                public FooBar call() {
+                    return fooBarClass.newInstance(new AbstractMixinInitializer() {
+                        @Override
+                        protected void initialize() {
+                            implement(Foo.class).with(fooProvider);
+                            implement(Bar.class).with(barProvider);
+                        }
+                    });
+                }
+            }));
+        }
+
+        // then
+        for (Future<FooBar> future : futures) {
+            assertThat(future.get().bar(), equalTo("generic bar"));
+        }
+    }
+
+    @Test
+    public void testParallelScopedProviders() {
+        // given
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        MixinClass<FooBar> fooBarClass = MixinClasses.builder(FooBar.class).engine(engine).parallelProviders(executor).build();
+        final InstanceProvider<Bar> barProvider = InstanceProviders.scoped(new InstanceProvider<Bar>() {
+            @Override
+            public Bar provide() {
+                return new BarImpl();
+            }
+        });
+        MixinInitializer initializer = new AbstractMixinInitializer() {
+            @Override
+            protected void initialize() {
+                implement(Bar.class).with(barProvider);
+                implement(Foo.class).with(new FooImpl());
+            }
+        };
+
+        // when
+        InstanceScope scope = new InstanceScope("test");
+        InstanceScope.Entry entry = scope.enter();
+        try {
+            FooBar fooBar = fooBarClass.newInstance(initializer);
+
+            // then
+            assertThat(fooBar.bar(), equalTo("generic bar"));
+        } finally {
+            entry.close();
+            scope.close();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testParallelPerThreadProviders() {
+        // given
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        MixinClass<FooBar> fooBarClass = MixinClasses.builder(FooBar.class).engine(engine).parallelProviders(executor).build();
+        final List<Thread> providingThreads = Lists.newArrayList();
+        final InstanceProvider<Bar> barProvider = InstanceProviders.perThread(new InstanceProvider<Bar>() {
+            @Override
+            public Bar provide() {
+                providingThreads.add(Thread.currentThread());
+                return new BarImpl();
+            }
+        });
+
+        // when
+        try {
+            for (int i = 0; i < 2; i++) {
+                fooBarClass.newInstance(new AbstractMixinInitializer() {
+                    @Override
+                    protected void initialize() {
+                        implement(Bar.class).with(barProvider);
+                        implement(Foo.class).with(new FooImpl());
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // then
+        assertThat(providingThreads, equalTo(Arrays.asList(Thread.currentThread())));
+    }
+
+    @Test
+    public void testParallelProvidersFailures() {
+        MixinClass<FooBar> fooBarClass = MixinClasses.builder(FooBar.class).engine(engine).parallelProviders().build();
+        try {
+            fooBarClass.newInstance(new AbstractMixinInitializer() {
+                @Override
+                protected void initialize() {
+                    implement(Foo.class).with(new InstanceProvider<Foo>() {
+                        @Override
+                        public Foo provide() {
+                            throw new IllegalStateException("foo");
+                        }
+                    });
+                    implement(Bar.class).with(new InstanceProvider<Bar>() {
+                        @Override
+                        public Bar provide() {
+                            throw new IllegalStateException("bar");
+                        }
+                    });
+                }
+            });
+            fail();
+        } catch (IncompleteImplementationException e) {
+            assertThat(e.getCause().getMessage(), equalTo("foo"));
+            assertThat(e.getSuppressed()[0].getMessage(), equalTo("bar"));
+        }
+    }
+
+    @Stateless
+    public static class StatelessBarImpl implements Bar {
+        static final AtomicInteger INSTANCES = new AtomicInteger();
+
+        public StatelessBarImpl() {
+            INSTANCES.incrementAndGet();
+        }
+
+        @Override
+        public String bar() {
+            return "stateless bar";
+        }
+    }
+
+    public static class StatefulCounterImpl implements Counter {
+        long total;
+
+        @Override
+        public long add(int delta, long factor) {
+            return total += delta * factor;
+        }
+
+        @Override
+        public void reset() {
+            total = 0;
+        }
+    }
+
+    public interface BarCounter extends Bar, Counter {
+    }
+
+    @Test
+    public void testStatelessImplementations() throws Exception {
+        // given
+        MixinClass<BarCounter> barCounterClass = create(BarCounter.class);
+        MixinInitializer initializer = new AbstractMixinInitializer() {
+            @Override
+            protected void initialize() {
+                implement(Bar.class).withClass(StatelessBarImpl.class);
+                implement(Counter.class).withClass(StatefulCounterImpl.class);
+            }
+        };
+
+        // when
+        int statelessInstances = StatelessBarImpl.INSTANCES.get();
+        BarCounter barCounter1 = barCounterClass.newInstance(initializer);
+        BarCounter barCounter2 = barCounterClass.newInstance(initializer);
+        barCounter1.add(1, 1L);
+
+        // then
+        assertThat(barCounter1.bar(), equalTo("stateless bar"));
+        assertThat(barCounter2.add(0, 0L), is(0L));
+        MixinBatch<BarCounter> bar = barCounterClass.batch(Bar.class.getMethod("bar"));
+        Object[] results = new Object[2];
+        bar.invoke(Arrays.asList(barCounter1, barCounter2), results);
+        assertThat(results[1], equalTo((Object) "stateless bar"));
+        assertThat(StatelessBarImpl.INSTANCES.get() - statelessInstances, is(1));
+    }
 }
@@ -0,0 +1,43 @@
+package platypus;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Method;
+
+import org.junit.Test;
+
+import platypus.MixinMetrics.MethodMetrics;
+
+public class MixinMetricsTest {
+
+    @Test
+    public void testBucketBounds() {
+        for (long nanos : new long[] { 0, 1, 7, 8, 15, 16, 17, 1000, 123456789, Long.MAX_VALUE }) {
+            int index = MethodMetrics.bucketIndex(nanos);
+            assertTrue(MethodMetrics.lowerBound(index) <= nanos);
+            if (nanos < Long.MAX_VALUE) {
+                assertTrue(MethodMetrics.lowerBound(index + 1) > nanos);
+            }
+        }
+    }
+
+    @Test
+    public void testPercentiles() throws Exception {
+        MixinMetrics metrics = new MixinMetrics();
+        Method method = Object.class.getMethod("toString");
+        for (int i = 1; i <= 100; i++) {
+            metrics.invoked(method, i * 1000, null);
+        }
+
+        MethodMetrics methodMetrics = metrics.getMethodMetrics(method);
+        assertThat(methodMetrics.getCount(), is(100L));
+        assertThat(methodMetrics.getTotalNanos(), is(5050000L));
+        long p50 = methodMetrics.getPercentileNanos(50);
+        long p99 = methodMetrics.getPercentileNanos(99);
+        assertTrue(p50 >= 50000 && p50 <= 50000 * 1.125);
+        assertTrue(p99 >= 99000 && p99 <= 99000 * 1.125);
+        assertThat(metrics.getMethodMetrics().size(), is(1));
+    }
+}
@@ -0,0 +1,95 @@
+package platypus;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Test;
+
+import platypus.processor.MixinTypeProcessor;
+
+import com.google.common.collect.ImmutableList;
+
+public class MixinTypeTest {
+
+    public interface Car extends Mixin {
+        String drive();
+    }
+
+    public interface Garage<T> {
+        List<T> park(T... vehicles) throws IOException;
+        <C extends Comparable<C> & CharSequence> C compare(C value);
+    }
+
+    @MixinType
+    public interface Delorean extends Car, Garage<Car> {
+    }
+
+    @MixinType
+    interface Hidden {
+        String hidden();
+    }
+
+    public class CarImpl extends Mixin.Impl implements Car {
+        @Override
+        public String drive() {
+            return "It can drive";
+        }
+    }
+
+    public class GarageImpl implements Garage<Car> {
+        @Override
+        public List<Car> park(Car... vehicles) {
+            return ImmutableList.copyOf(vehicles);
+        }
+
+        @Override
+        public <C extends Comparable<C> & CharSequence> C compare(C value) {
+            return value;
+        }
+    }
+
+    @Test
+    public void testPrecompiledMixinClass() throws IOException {
+        MixinClass<Delorean> deloreanClass = MixinClasses.create(Delorean.class);
+
+        Delorean delorean = deloreanClass.newInstance(new AbstractMixinInitializer() {
+            @Override
+            protected void initialize() {
+                implement(Car.class).with(new CarImpl());
+                implement(Garage.class).with(new GarageImpl());
+            }
+        });
+
+        assertThat(deloreanClass.getEngine(), is(MixinEngine.GENERATED));
+        assertThat(delorean.getClass().getName(), equalTo(Delorean.class.getName() + MixinTypeProcessor.CLASS_NAME_SUFFIX));
+        assertThat(delorean.drive(), equalTo("It can drive"));
+        assertThat(delorean.as(Car.class).drive(), equalTo("It can drive"));
+        assertThat(delorean.park(delorean), equalTo((List<Car>) ImmutableList.<Car>of(delorean)));
+        assertThat(delorean.compare("dmc"), equalTo("dmc"));
+        assertThat(delorean.equals(delorean), is(true));
+    }
+
+    @Test
+    public void testPrecompiledNonPublicMixinClass() {
+        MixinClass<Hidden> hiddenClass = MixinClasses.create(Hidden.class);
+
+        Hidden hidden = hiddenClass.newInstance(new AbstractMixinInitializer() {
+            @Override
+            protected void initialize() {
+                implement(Hidden.class).with(new Hidden() {
+                    @Override
+                    public String hidden() {
+                        return "hidden";
+                    }
+                });
+            }
+        });
+
+        assertThat(hiddenClass.getEngine(), is(MixinEngine.GENERATED));
+        assertThat(hidden.hidden(), equalTo("hidden"));
+    }
+}